@@ -3,40 +3,59 @@ package com.sytion06.backend.api;
 import com.sytion06.backend.model.Document;
 import com.sytion06.backend.model.DocumentStatus;
 import com.sytion06.backend.repo.DocumentRepository;
+import com.sytion06.backend.repo.PageCheckpointRepository;
 import com.sytion06.backend.repo.QuestionRepository;
-import com.sytion06.backend.service.DocumentProcessingService;
+import com.sytion06.backend.model.ProcessingJob;
+import com.sytion06.backend.service.DocumentIntakeService;
+import com.sytion06.backend.service.JobAlreadyActiveException;
+import com.sytion06.backend.service.ProcessingJobService;
+import com.sytion06.backend.service.QueueFullException;
+import com.sytion06.backend.service.RenditionService;
+import com.sytion06.backend.service.UploadRejectedException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.scheduling.annotation.Async;
-import java.util.concurrent.CompletableFuture;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.util.*;
+import java.util.regex.Pattern;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sytion06.backend.api.dto.QuestionDto;
 
 @RestController
 @RequestMapping("/api/documents")
 public class DocumentController {
 
-    private final Path storageDir = Paths.get("storage");
     private final DocumentRepository documents;
-    private final DocumentProcessingService processing;
+    private final ProcessingJobService jobs;
+    private final DocumentIntakeService intake;
     private final QuestionRepository questionRepo;
-    private final ObjectMapper om = new ObjectMapper();
-
-    public DocumentController(DocumentRepository documents, DocumentProcessingService processing,
-                              QuestionRepository questionRepo) {
+    private final PageCheckpointRepository checkpointRepo;
+    private final DocumentEventStream eventStream;
+    private final StaticFileSender files;
+    private final RenditionService renditions;
+
+    // page_0001.png; anything else (including "..") is not a page
+    private static final Pattern PAGE_FILE = Pattern.compile("[A-Za-z0-9_-]+\\.png");
+
+    public DocumentController(DocumentRepository documents, ProcessingJobService jobs, DocumentIntakeService intake,
+                              QuestionRepository questionRepo, PageCheckpointRepository checkpointRepo,
+                              DocumentEventStream eventStream, StaticFileSender files,
+                              RenditionService renditions) {
         this.documents = documents;
-        this.processing = processing;
+        this.jobs = jobs;
+        this.intake = intake;
         this.questionRepo = questionRepo;
+        this.checkpointRepo = checkpointRepo;
+        this.eventStream = eventStream;
+        this.files = files;
+        this.renditions = renditions;
     }
 
     @PostMapping
@@ -49,31 +68,63 @@ public class DocumentController {
             return ResponseEntity.badRequest().body(Map.of("error", "Only PDF is supported"));
         }
 
-        Files.createDirectories(storageDir);
+        try (var in = file.getInputStream()) {
+            return ResponseEntity.ok(uploadResult(intake.storePdf(in, name)));
+        } catch (UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
 
-        Document doc = new Document();
-        doc.setFilename(name);
-        doc.setStatus(DocumentStatus.UPLOADED);
-        doc = documents.save(doc); // generates id via @PrePersist
+    /**
+     * The PDF itself as the request body ({@code Content-Type: application/pdf}). Unlike the
+     * multipart upload it is not spooled by the servlet container first: the body is validated,
+     * hashed and written to storage in one pass as it arrives.
+     */
+    @PostMapping(consumes = "application/pdf")
+    public ResponseEntity<?> uploadRaw(InputStream body,
+                                       @RequestParam String filename,
+                                       @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long length)
+            throws IOException {
+        if (!filename.toLowerCase().endsWith(".pdf")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Only PDF is supported"));
+        }
+        if (length != null && length > intake.maxUploadBytes()) {
+            return rejected(new UploadRejectedException("File is larger than " + intake.maxUploadBytes() / (1024 * 1024) + " MB", true));
+        }
 
-        Path target = storageDir.resolve(doc.getId() + ".pdf");
-        Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            return ResponseEntity.ok(uploadResult(intake.storePdf(body, filename)));
+        } catch (UploadRejectedException e) {
+            return rejected(e);
+        }
+    }
 
-        return ResponseEntity.ok(Map.of(
-                "docId", doc.getId().toString(),
-                "filename", doc.getFilename(),
-                "status", doc.getStatus().name()
-        ));
+    static ResponseEntity<?> rejected(UploadRejectedException e) {
+        return ResponseEntity.status(e.isTooLarge() ? 413 : 400).body(Map.of("error", e.getMessage()));
+    }
+
+    static Map<String, Object> uploadResult(DocumentIntakeService.IntakeResult stored) {
+        Document doc = stored.document();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("docId", doc.getId().toString());
+        body.put("filename", doc.getFilename());
+        body.put("status", doc.getStatus().name());
+        body.put("deduplicated", stored.deduplicated());
+        if (stored.deduplicated()) {
+            body.put("sourceDocId", stored.source().getId().toString());
+        }
+        return body;
     }
 
     @GetMapping
     public List<Map<String, Object>> list() {
-        return documents.findAll().stream().sorted(Comparator.comparing(Document::getCreatedAt).reversed())
+        return documents.findSummaries().stream()
                 .map(d -> Map.<String, Object>of(
-                        "docId", d.getId().toString(),
-                        "filename", d.getFilename(),
-                        "status", d.getStatus().name(),
-                        "createdAt", d.getCreatedAt().toString()
+                        "docId", d.id().toString(),
+                        "filename", d.filename(),
+                        "status", d.status().name(),
+                        "createdAt", d.createdAt().toString()
                 ))
                 .toList();
     }
@@ -91,89 +142,110 @@ public class DocumentController {
     }
 
     @PostMapping("/{docId}/process")
-    public ResponseEntity<?> process(@PathVariable UUID docId) {
+    public ResponseEntity<?> process(@PathVariable UUID docId,
+                                     @RequestParam(defaultValue = "resume") String mode) {
+        if (!mode.equals("resume") && !mode.equals("full")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "mode must be 'resume' or 'full'"));
+        }
+
         Document doc = documents.findById(docId).orElse(null);
         if (doc == null) {
             return ResponseEntity.status(404).body(Map.of("error", "Not found"));
         }
 
-        if (doc.getStatus() == DocumentStatus.PROCESSING) {
-            return ResponseEntity.status(409)
-                    .body(Map.of("error", "Document is already processing"));
+        ProcessingJob job;
+        try {
+            job = jobs.submit(doc, mode.equals("full"));
+        } catch (JobAlreadyActiveException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (QueueFullException e) {
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", e.getMessage()));
         }
-
-        runAsync(docId);
-        return ResponseEntity.ok(Map.of("docId", docId.toString(), "status", "PROCESSING"));
+        return ResponseEntity.accepted().body(Map.of(
+                "docId", docId.toString(),
+                "jobId", job.getId().toString(),
+                "status", job.getStatus().name()
+        ));
     }
 
-    @GetMapping("/{docId}/pages/{fileName}")
-    public ResponseEntity<Resource> getPageImage(
-            @PathVariable UUID docId,
-            @PathVariable String fileName) throws Exception {
-
-        Path file = Paths.get("storage")
-                .resolve(docId.toString())
-                .resolve("pages")
-                .resolve(fileName);
+    @GetMapping("/{docId}/pages")
+    public List<Map<String, Object>> pageProgress(@PathVariable UUID docId) {
+        return checkpointRepo.findByDocumentIdOrderByPageIndexAsc(docId).stream()
+                .map(c -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("pageIndex", c.getPageIndex());
+                    m.put("state", c.getState().name());
+                    m.put("mode", c.getMode() == null ? null : c.getMode().name());
+                    m.put("attempts", c.getAttempts());
+                    m.put("questionCount", c.getQuestionCount());
+                    m.put("lastError", c.getLastError());
+                    m.put("updatedAt", c.getUpdatedAt().toString());
+                    return m;
+                })
+                .toList();
+    }
 
-        if (!Files.exists(file)) {
+    /**
+     * Live progress as Server-Sent Events. The first event, {@code snapshot}, carries the current
+     * status and page checkpoints; then document-started, page-started, page-done, page-failed and
+     * finally document-finished, after which the stream ends. Without an active job the stream
+     * ends right after the snapshot.
+     */
+    @GetMapping("/{docId}/events")
+    public ResponseEntity<SseEmitter> events(@PathVariable UUID docId) {
+        Document doc = documents.findById(docId).orElse(null);
+        if (doc == null) {
             return ResponseEntity.status(404).build();
         }
 
-        Resource resource = new UrlResource(file.toUri());
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_TYPE, "image/png")
-                .body(resource);
-    }
-
-    @Async
-    public CompletableFuture<Void> runAsync(UUID docId) {
+        SseEmitter emitter = eventStream.open(docId);
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("status", doc.getStatus().name());
+        snapshot.put("lastError", doc.getLastError());
+        snapshot.put("pages", pageProgress(docId));
         try {
-            processing.process(docId);
-        } catch (Exception e) {
-            e.printStackTrace();
-
-            documents.findById(docId).ifPresent(d -> {
-                // Only mark FAILED if still processing (prevents overwriting DONE from a later run)
-                if (d.getStatus() == DocumentStatus.PROCESSING) {
-                    d.setStatus(DocumentStatus.FAILED);
-                    d.setLastError(e.getMessage());
-                    documents.save(d);
-                }
-            });
-        }
-        return CompletableFuture.completedFuture(null);
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshot));
+            if (!jobs.isActive(docId)) emitter.complete();
+        } catch (IOException | IllegalStateException finishedMeanwhile) {
+            // the run ended (and completed the stream) while the snapshot was being built
+        }
+        return ResponseEntity.ok(emitter);
     }
 
-    @GetMapping("/{docId}/questions")
-    public List<QuestionDto> questions(@PathVariable UUID docId) {
-        return questionRepo.findByDocumentIdOrderByPageIndexAsc(docId).stream()
-                .map(q -> new QuestionDto(
-                        q.getId(),
-                        q.getDocumentId(),
-                        q.getPageIndex(),
-                        q.getNumberLabel(),
-                        q.getStem(),
-                        parseChoices(q.getChoicesJson()),
-                        q.getCategory(),
-                        q.getConfidence(),
-                        q.isNeedsReview(),
-                        q.getReviewReason(),
-                        q.isHasFigure(),
-                        "/api/documents/"
-                                + q.getDocumentId()
-                                + "/pages/"
-                                + q.getPageImageFile()
-                ))
-                .toList();
+    @GetMapping("/{docId}/pages/{fileName}")
+    public void getPageImage(@PathVariable UUID docId, @PathVariable String fileName,
+                             @RequestParam(defaultValue = "original") String size,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!PAGE_FILE.matcher(fileName).matches()) {
+            response.setStatus(404);
+            return;
+        }
+        RenditionService.Size variant = RenditionService.Size.parse(size);
+        if (variant == null) {
+            response.sendError(400, "size must be thumb, preview or original");
+            return;
+        }
+        RenditionService.Rendition r = renditions.get(docId, fileName, variant).orElse(null);
+        if (r == null) {
+            response.setStatus(404);
+            return;
+        }
+        files.send(request, response, r.file(), r.offset(), r.length(), r.contentType(), r.etag());
     }
 
-    private Map<String, String> parseChoices(String choicesJson) {
-        try {
-            if (choicesJson == null || choicesJson.isBlank()) return null;
-            return om.readValue(choicesJson, new TypeReference<Map<String, String>>() {});
-        } catch (Exception e) {
-            return null;
+    /** {@code view=summary} as for {@code /api/questions}: no choices and only the start of each stem. */
+    @GetMapping("/{docId}/questions")
+    public ResponseEntity<?> questions(@PathVariable UUID docId, @RequestParam(defaultValue = "full") String view) {
+        if (view.equals("summary")) {
+            return ResponseEntity.ok(questionRepo.findSummariesByDocumentId(docId));
+        }
+        if (!view.equals("full")) {
+            return ResponseEntity.status(400).body(Map.of("error", "view must be full or summary"));
         }
+        return ResponseEntity.ok(questionRepo.findByDocumentIdOrderByPageIndexAsc(docId).stream()
+                .map(q -> QuestionDto.from(q, "/api/documents/" + q.getDocumentId() + "/pages/" + q.getPageImageFile()))
+                .toList());
     }
 }
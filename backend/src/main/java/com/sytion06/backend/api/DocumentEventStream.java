@@ -0,0 +1,127 @@
+package com.sytion06.backend.api;
+
+import com.sytion06.backend.service.ProcessingEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Open SSE connections per document; relays {@link ProcessingEvent}s to them. Events are only
+ * queued on the publishing thread (a processing job or a model callback) and sent from the
+ * {@code eventSender} pool, so a slow client never holds up processing. A client whose queue
+ * fills up is dropped; it can reconnect and start again from the snapshot.
+ */
+@Component
+public class DocumentEventStream {
+
+    private final Map<UUID, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService sender;
+    private final long timeoutMs;
+    private final int queueCapacity;
+
+    public DocumentEventStream(@Qualifier("eventSender") ExecutorService sender,
+                               @Value("${qbank.events.timeout-minutes:30}") long timeoutMinutes,
+                               @Value("${qbank.events.queue-capacity:256}") int queueCapacity) {
+        this.sender = sender;
+        this.timeoutMs = timeoutMinutes * 60_000;
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /** Registers a subscriber before anything is sent to it, so no event can slip past. */
+    public SseEmitter open(UUID docId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber s = new Subscriber(docId, emitter);
+        subscribers.computeIfAbsent(docId, k -> new CopyOnWriteArrayList<>()).add(s);
+
+        Runnable remove = () -> {
+            s.closed = true;
+            remove(s);
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    @EventListener
+    public void on(ProcessingEvent event) {
+        List<Subscriber> list = subscribers.get(event.documentId());
+        if (list == null) return;
+
+        for (Subscriber s : list) s.offer(event);
+        if (event.isFinal()) subscribers.remove(event.documentId());
+    }
+
+    private void remove(Subscriber s) {
+        subscribers.computeIfPresent(s.docId, (k, list) -> {
+            list.remove(s);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /** One connection and the events not yet sent to it; at most one sender drains it at a time. */
+    private final class Subscriber {
+        final UUID docId;
+        final SseEmitter emitter;
+        final Queue<ProcessingEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+        // only touched by the draining sender
+        boolean completed;
+
+        Subscriber(UUID docId, SseEmitter emitter) {
+            this.docId = docId;
+            this.emitter = emitter;
+        }
+
+        void offer(ProcessingEvent event) {
+            if (closed) return;
+            if (!queue.offer(event)) {
+                // too far behind: stop buffering for it; the sender completes the stream
+                closed = true;
+                remove(this);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (draining.compareAndSet(false, true)) sender.execute(this::drain);
+        }
+
+        void drain() {
+            try {
+                ProcessingEvent event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(SseEmitter.event().name(event.type()).data(event.data()));
+                    if (event.isFinal()) closed = true;
+                }
+                if (closed && !completed) {
+                    completed = true;
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException gone) {
+                // client went away
+                closed = true;
+                completed = true;
+                remove(this);
+            } finally {
+                draining.set(false);
+                // an event may have arrived after the last poll, while this sender still held the flag
+                if (closed ? !completed : !queue.isEmpty()) schedule();
+            }
+        }
+    }
+}
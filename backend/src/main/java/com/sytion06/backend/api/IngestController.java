@@ -0,0 +1,56 @@
+package com.sytion06.backend.api;
+
+import com.sytion06.backend.service.IngestService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Bulk ingest of past-paper archives. {@code POST /api/ingests} takes the ZIP itself as the
+ * request body ({@code Content-Type: application/zip}, not multipart), so it is read as it
+ * arrives; {@code POST /api/ingests/directory?path=...} reads a folder on the server.
+ */
+@RestController
+@RequestMapping("/api/ingests")
+public class IngestController {
+
+    private final IngestService ingests;
+
+    public IngestController(IngestService ingests) {
+        this.ingests = ingests;
+    }
+
+    @PostMapping(consumes = {"application/zip", "application/x-zip-compressed", "application/octet-stream"})
+    public ResponseEntity<?> zip(InputStream body,
+                                 @RequestParam(defaultValue = "upload.zip") String name,
+                                 @RequestParam(defaultValue = "true") boolean process) {
+        IngestService.Ingest ingest = ingests.ingestZip(body, name, process);
+        return ResponseEntity.accepted().body(ingests.progress(ingest));
+    }
+
+    @PostMapping("/directory")
+    public ResponseEntity<?> directory(@RequestParam String path,
+                                       @RequestParam(defaultValue = "true") boolean process) {
+        IngestService.Ingest ingest;
+        try {
+            ingest = ingests.ingestDirectory(path, process);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.accepted().body(ingests.progress(ingest));
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> list() {
+        return ingests.recent().stream().map(ingests::progress).toList();
+    }
+
+    @GetMapping("/{ingestId}")
+    public ResponseEntity<?> get(@PathVariable UUID ingestId) {
+        return ingests.find(ingestId)
+                .<ResponseEntity<?>>map(i -> ResponseEntity.ok(ingests.progress(i)))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Not found")));
+    }
+}
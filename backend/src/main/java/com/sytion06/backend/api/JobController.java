@@ -0,0 +1,59 @@
+package com.sytion06.backend.api;
+
+import com.sytion06.backend.model.ProcessingJob;
+import com.sytion06.backend.repo.ProcessingJobRepository;
+import com.sytion06.backend.service.ModelRateLimiter;
+import com.sytion06.backend.service.ProcessingJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+public class JobController {
+
+    private final ProcessingJobRepository jobRepo;
+    private final ProcessingJobService jobs;
+    private final ModelRateLimiter limiter;
+
+    public JobController(ProcessingJobRepository jobRepo, ProcessingJobService jobs, ModelRateLimiter limiter) {
+        this.jobRepo = jobRepo;
+        this.jobs = jobs;
+        this.limiter = limiter;
+    }
+
+    @GetMapping("/api/jobs/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>(jobs.stats());
+        out.put("model", limiter.stats());
+        return out;
+    }
+
+    @GetMapping("/api/jobs/{jobId}")
+    public ResponseEntity<?> get(@PathVariable UUID jobId) {
+        return jobRepo.findById(jobId)
+                .<ResponseEntity<?>>map(j -> ResponseEntity.ok(toMap(j)))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Not found")));
+    }
+
+    @GetMapping("/api/documents/{docId}/jobs")
+    public List<Map<String, Object>> forDocument(@PathVariable UUID docId) {
+        return jobRepo.findByDocumentIdOrderByCreatedAtDesc(docId).stream()
+                .map(this::toMap)
+                .toList();
+    }
+
+    private Map<String, Object> toMap(ProcessingJob j) {
+        // LinkedHashMap because timestamps may be null (Map.of rejects nulls)
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("jobId", j.getId().toString());
+        out.put("docId", j.getDocumentId().toString());
+        out.put("status", j.getStatus().name());
+        out.put("mode", j.isFullReprocess() ? "full" : "resume");
+        out.put("createdAt", j.getCreatedAt().toString());
+        out.put("startedAt", j.getStartedAt() == null ? null : j.getStartedAt().toString());
+        out.put("finishedAt", j.getFinishedAt() == null ? null : j.getFinishedAt().toString());
+        out.put("error", j.getError());
+        return out;
+    }
+}
@@ -1,15 +1,22 @@
 package com.sytion06.backend.api;
 
 import com.sytion06.backend.repo.QuestionRepository;
+import com.sytion06.backend.repo.QuestionSummary;
+import com.sytion06.backend.model.CategoryStats;
+import com.sytion06.backend.service.CategoryStatsService;
+import com.sytion06.backend.service.SearchIndexService;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sytion06.backend.api.dto.CursorPage;
+import com.sytion06.backend.api.dto.QuestionCursor;
 import com.sytion06.backend.api.dto.QuestionDto;
 import com.sytion06.backend.model.Question;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import org.springframework.http.ResponseEntity;
@@ -18,60 +25,143 @@ import org.springframework.web.bind.annotation.PathVariable;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 
 @RestController
 public class QuestionController {
 
-    private final ObjectMapper om = new ObjectMapper();
-
     private final QuestionRepository questionRepo;
+    private final SearchIndexService searchIndex;
+    private final CategoryStatsService categoryStats;
 
-    public QuestionController(QuestionRepository questionRepo) {
+    public QuestionController(QuestionRepository questionRepo, SearchIndexService searchIndex,
+                              CategoryStatsService categoryStats) {
         this.questionRepo = questionRepo;
+        this.searchIndex = searchIndex;
+        this.categoryStats = categoryStats;
     }
 
+    /** Question counts per category, read from totals kept as questions are saved. */
     @GetMapping("/api/questions/categories")
     public List<Map<String, Object>> categoryCounts() {
-        return questionRepo.countByCategory().stream()
-                .map(arr -> Map.of(
-                        "category", arr[0],
-                        "count", arr[1]
-                ))
-                .toList();
+        return categoryCounts(categoryStats.categories());
     }
 
+    /** Recounts the categories from the questions table, should the totals ever disagree with it. */
+    @PostMapping("/api/questions/categories/rebuild")
+    public List<Map<String, Object>> rebuildCategoryCounts() {
+        return categoryCounts(categoryStats.rebuild());
+    }
+
+    /**
+     * Offset pages by default ({@code page}, {@code size}, {@code sort}); {@code count=false} skips the
+     * total count and returns a slice. With {@code cursor} (empty for the first page) it switches to
+     * keyset pages, newest first, which cost the same at any depth and do not shift while new
+     * questions are being saved; pass each page's {@code nextCursor} to get the next one. In that mode
+     * {@code category} must match exactly, as listed by {@code /api/questions/categories}, and the
+     * total is only counted with {@code count=true}.
+     * {@code view=summary} returns {@link QuestionSummary} rows, which leave out the choices and
+     * all but the start of the stem; {@code /api/questions/{id}} has the rest.
+     */
     @GetMapping("/api/questions")
-    public Page<QuestionDto> allQuestions(
+    public ResponseEntity<?> allQuestions(
             @RequestParam(required = false) String category,
             @RequestParam(required = false, name = "q") String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Boolean count,
+            @RequestParam(defaultValue = "full") String view,
             Pageable pageable
     ) {
-        Page<Question> page;
-
-        if (category != null && !category.isBlank() && search != null && !search.isBlank()) {
-            page = questionRepo.findByCategoryIgnoreCaseAndStemContainingIgnoreCase(category, search, pageable);
-        } else if (category != null && !category.isBlank()) {
-            page = questionRepo.findByCategoryIgnoreCase(category, pageable);
-        } else if (search != null && !search.isBlank()) {
-            page = questionRepo.findByStemContainingIgnoreCase(search, pageable);
+        boolean byCategory = category != null && !category.isBlank();
+        boolean searching = search != null && !search.isBlank();
+        if (!view.equals("full") && !view.equals("summary")) {
+            return ResponseEntity.status(400).body(Map.of("error", "view must be full or summary"));
+        }
+        boolean summary = view.equals("summary");
+        // cursor pages are walked one after another; counting each of them is wasted work
+        boolean counting = count != null ? count : cursor == null;
+
+        if (cursor != null) {
+            if (searching) {
+                return ResponseEntity.status(400).body(Map.of("error", "Search results are ranked; page them with page and size"));
+            }
+            QuestionCursor after;
+            try {
+                after = cursor.isBlank() ? null : QuestionCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(400).body(Map.of("error", e.getMessage()));
+            }
+            int size = pageable.getPageSize();
+            // one row more than asked tells whether there is a next page without counting
+            Limit limit = Limit.of(size + 1);
+            Long total = !counting ? null : byCategory ? categoryStats.count(category) : questionRepo.count();
+
+            if (summary) {
+                List<QuestionSummary> rows;
+                if (byCategory) {
+                    rows = after == null
+                            ? questionRepo.findNewestSummariesInCategory(category, limit)
+                            : questionRepo.findNewestSummariesInCategoryBefore(category, after.createdAt(), after.id(), limit);
+                } else {
+                    rows = after == null
+                            ? questionRepo.findNewestSummaries(limit)
+                            : questionRepo.findNewestSummariesBefore(after.createdAt(), after.id(), limit);
+                }
+                return ResponseEntity.ok(cursorPage(rows, size, total, r -> new QuestionCursor(r.createdAt(), r.id()), r -> r));
+            }
+
+            List<Question> rows;
+            if (byCategory) {
+                rows = after == null
+                        ? questionRepo.findNewestInCategory(category, limit)
+                        : questionRepo.findNewestInCategoryBefore(category, after.createdAt(), after.id(), limit);
+            } else {
+                rows = after == null
+                        ? questionRepo.findNewest(limit)
+                        : questionRepo.findNewestBefore(after.createdAt(), after.id(), limit);
+            }
+            return ResponseEntity.ok(cursorPage(rows, size, total, QuestionCursor::of, this::toListDto));
+        }
+
+        if (summary && !searching) {
+            Slice<QuestionSummary> slice = byCategory
+                    ? questionRepo.findSummariesByCategory(category, pageable)
+                    : questionRepo.findSummaries(pageable);
+            if (counting) {
+                long total = byCategory ? categoryStats.countIgnoreCase(category) : questionRepo.count();
+                slice = new PageImpl<>(slice.getContent(), pageable, total);
+            }
+            return ResponseEntity.ok(slice);
+        }
+
+        Slice<Question> page;
+
+        if (searching) {
+            // ranked by relevance; stems, choices and number labels are searched
+            page = searchIndex.search(search, category, pageable);
+        } else if (byCategory) {
+            page = counting
+                    ? questionRepo.findByCategoryIgnoreCase(category, pageable)
+                    : questionRepo.findSliceByCategoryIgnoreCase(category, pageable);
         } else {
-            page = questionRepo.findAll(pageable);
+            page = counting ? questionRepo.findAll(pageable) : questionRepo.findSliceBy(pageable);
         }
 
-        return page.map(q -> new QuestionDto(
-                q.getId(),
-                q.getDocumentId(),
-                q.getPageIndex(),
-                q.getNumberLabel(),
-                q.getStem(),
-                parseChoices(q.getChoicesJson()),
-                q.getCategory(),
-                q.getConfidence(),
-                q.isNeedsReview(),
-                q.getReviewReason(),
-                q.isHasFigure(),
-                null // pageImageUrl (we’ll wire this later if you want)
-        ));
+        // a search page holds only the questions shown, so summarizing it here costs nothing extra
+        return ResponseEntity.ok(summary ? page.map(QuestionController::summarize) : page.map(this::toListDto));
+    }
+
+    @GetMapping("/api/questions/search-index")
+    public Map<String, Object> searchIndexStatus() {
+        return searchIndex.current().map(searchIndex::progress).orElse(Map.of("status", "IDLE"));
+    }
+
+    /** Rebuilds the search index from the questions table, e.g. after restoring a database backup. */
+    @PostMapping("/api/questions/search-index/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex() {
+        return searchIndex.rebuild()
+                .<ResponseEntity<?>>map(run -> ResponseEntity.accepted().body(searchIndex.progress(run)))
+                .orElseGet(() -> ResponseEntity.status(409).body(Map.of("error", "A rebuild is already running")));
     }
 
     @GetMapping("/api/questions/{id}")
@@ -83,7 +173,7 @@ public class QuestionController {
                         question.getPageIndex(),
                         question.getNumberLabel(),
                         question.getStem(),
-                        parseChoices(question.getChoicesJson()),
+                        question.getChoicesJson(),
                         question.getCategory(),
                         question.getConfidence(),
                         question.isNeedsReview(),
@@ -94,13 +184,40 @@ public class QuestionController {
                 .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Not found")));
     }
 
-    private Map<String, String> parseChoices(String choicesJson) {
-        try {
-            if (choicesJson == null || choicesJson.isBlank()) return null;
-            return om.readValue(choicesJson, new TypeReference<Map<String, String>>() {});
-        } catch (Exception e) {
-            return null;
+    private static <T, R> CursorPage<R> cursorPage(List<T> rows, int size, Long total,
+                                                   Function<T, QuestionCursor> position, Function<T, R> dto) {
+        boolean more = rows.size() > size;
+        if (more) rows = rows.subList(0, size);
+        return new CursorPage<>(
+                rows.stream().map(dto).toList(),
+                size,
+                more ? position.apply(rows.get(rows.size() - 1)).encode() : null,
+                total
+        );
+    }
+
+    private static List<Map<String, Object>> categoryCounts(List<CategoryStats> stats) {
+        return stats.stream()
+                .map(s -> Map.<String, Object>of(
+                        "category", s.getCategory(),
+                        "count", s.getQuestions(),
+                        "needsReview", s.getNeedsReview(),
+                        "hasFigure", s.getHasFigure()
+                ))
+                .toList();
+    }
+
+    static QuestionSummary summarize(Question q) {
+        String stem = q.getStem();
+        if (stem != null && stem.length() > QuestionSummary.STEM_PREVIEW_LENGTH) {
+            stem = stem.substring(0, QuestionSummary.STEM_PREVIEW_LENGTH);
         }
+        return new QuestionSummary(q.getId(), q.getDocumentId(), q.getPageIndex(), q.getNumberLabel(), stem,
+                q.getCategory(), q.getConfidence(), q.isNeedsReview(), q.isHasFigure(), q.getCreatedAt());
+    }
+
+    private QuestionDto toListDto(Question q) {
+        return QuestionDto.from(q, null); // pageImageUrl (we’ll wire this later if you want)
     }
 
     private String buildPageImageUrl(Question q) {
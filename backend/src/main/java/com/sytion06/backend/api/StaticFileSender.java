@@ -0,0 +1,154 @@
+package com.sytion06.backend.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves files that never change once written (rendered pages and their renditions) so that
+ * clients can cache them for good:
+ * <ul>
+ *   <li>the caller's strong ETag and {@code Cache-Control: immutable};</li>
+ *   <li>{@code If-None-Match} answered with 304;</li>
+ *   <li>a single byte range ({@code Range}, honoring {@code If-Range}) answered with 206.</li>
+ * </ul>
+ * A resource may be a region of a larger file (a page in a pack). The body goes out through
+ * Tomcat's sendfile: the connector hands the file region to the kernel
+ * ({@code FileChannel.transferTo}) after the servlet returns, so it never passes through the heap.
+ * Where sendfile is unavailable (TLS, another container) the file is copied channel to channel.
+ */
+@Component
+public class StaticFileSender {
+
+    // Tomcat's request attributes for sendfile (org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final AtomicLong sendfile = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+
+    /**
+     * Sends {@code length} bytes at {@code offset} of {@code file} (for example one page of a pack
+     * file) as the whole resource. {@code etag} is quoted and must change
+     * whenever the bytes do.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file, long offset, long length,
+                     String contentType, String etag) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            notModified.incrementAndGet();
+            response.setStatus(304);
+            return;
+        }
+
+        long start = 0;
+        long end = length;                                  // exclusive, relative to offset
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                response.setStatus(416);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                partial.incrementAndGet();
+                response.setStatus(206);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            sendfile.incrementAndGet();
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, offset + start);
+            request.setAttribute(SENDFILE_END, offset + end);
+            return;
+        }
+
+        copied.incrementAndGet();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = offset + start;
+            while (pos < offset + end) {
+                pos += in.transferTo(pos, offset + end - pos, target);
+            }
+            out.flush();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("sendfile", sendfile.get());
+        out.put("copied", copied.get());
+        out.put("notModified", notModified.get());
+        out.put("partial", partial.get());
+        return out;
+    }
+
+    /** Weak comparison, as If-None-Match requires; {@code *} matches any existing file. */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals("*") || c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * {start, endExclusive} for a single satisfiable range; an empty array to ignore the header
+     * (malformed, or several ranges: the whole file is a valid answer); null if unsatisfiable.
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return new long[0];
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {                           // suffix: the last n bytes
+                long n = Long.parseLong(to);
+                if (n <= 0) return null;
+                return new long[]{Math.max(0, length - n), length};
+            }
+            long start = Long.parseLong(from);
+            long last = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            if (start >= length || last < start) return null;
+            return new long[]{start, last + 1};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
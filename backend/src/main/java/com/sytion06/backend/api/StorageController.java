@@ -0,0 +1,40 @@
+package com.sytion06.backend.api;
+
+import com.sytion06.backend.service.pages.PageStoreMigration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Which page store is active, how page images are being served, and {@code POST /api/storage/migrate} to convert page images
+ * written in the other layout after switching {@code qbank.storage.page-store}.
+ */
+@RestController
+@RequestMapping("/api/storage")
+public class StorageController {
+
+    private final PageStoreMigration migration;
+    private final StaticFileSender files;
+
+    public StorageController(PageStoreMigration migration, StaticFileSender files) {
+        this.migration = migration;
+        this.files = files;
+    }
+
+    @GetMapping
+    public Map<String, Object> get() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("pageStore", migration.store().kind());
+        out.put("migration", migration.current().map(migration::progress).orElse(null));
+        out.put("pageImages", files.stats());
+        return out;
+    }
+
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrate() {
+        return migration.start()
+                .<ResponseEntity<?>>map(run -> ResponseEntity.accepted().body(migration.progress(run)))
+                .orElseGet(() -> ResponseEntity.status(409).body(Map.of("error", "A migration is already running")));
+    }
+}
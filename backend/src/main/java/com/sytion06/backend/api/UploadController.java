@@ -0,0 +1,94 @@
+package com.sytion06.backend.api;
+
+import com.sytion06.backend.service.UploadRejectedException;
+import com.sytion06.backend.service.UploadSessionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Resumable uploads for large scans:
+ * <ol>
+ *   <li>{@code POST /api/uploads?filename=&size=} opens a session;</li>
+ *   <li>{@code PATCH /api/uploads/{id}?offset=} appends the next chunk (raw body);</li>
+ *   <li>after a dropped connection, {@code GET /api/uploads/{id}} tells where to continue.</li>
+ * </ol>
+ * The chunk that completes the file answers with the same body as a regular upload.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    private final UploadSessionService uploads;
+
+    public UploadController(UploadSessionService uploads) {
+        this.uploads = uploads;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> create(@RequestParam String filename, @RequestParam long size) throws IOException {
+        UploadSessionService.Session s;
+        try {
+            s = uploads.create(filename, size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (UploadRejectedException e) {
+            return DocumentController.rejected(e);
+        }
+        return ResponseEntity.status(201).body(status(s, 0));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> get(@PathVariable UUID uploadId) throws IOException {
+        UploadSessionService.Session s = uploads.find(uploadId).orElse(null);
+        if (s == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Not found"));
+        }
+        return ResponseEntity.ok(status(s, s.offset()));
+    }
+
+    @PatchMapping("/{uploadId}")
+    public ResponseEntity<?> append(@PathVariable UUID uploadId, @RequestParam long offset, InputStream body)
+            throws IOException {
+        UploadSessionService.Session s = uploads.find(uploadId).orElse(null);
+        if (s == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Not found"));
+        }
+
+        UploadSessionService.Progress p;
+        try {
+            p = uploads.append(s, offset, body);
+        } catch (UploadSessionService.OffsetMismatchException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage(), "offset", e.getOffset()));
+        } catch (UploadRejectedException e) {
+            return DocumentController.rejected(e);
+        }
+
+        if (p.result() == null) {
+            return ResponseEntity.ok(status(s, p.offset()));
+        }
+        return ResponseEntity.ok(DocumentController.uploadResult(p.result()));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> cancel(@PathVariable UUID uploadId) throws IOException {
+        UploadSessionService.Session s = uploads.find(uploadId).orElse(null);
+        if (s == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Not found"));
+        }
+        uploads.cancel(s);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, Object> status(UploadSessionService.Session s, long offset) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("uploadId", s.getId().toString());
+        out.put("filename", s.getFilename());
+        out.put("size", s.getSize());
+        out.put("offset", offset);
+        return out;
+    }
+}
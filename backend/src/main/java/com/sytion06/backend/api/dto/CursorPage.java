@@ -0,0 +1,16 @@
+package com.sytion06.backend.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One keyset page. {@code nextCursor} is null on the last page; {@code totalElements} is only
+ * present when the client asked for it with {@code count=true}.
+ */
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        String nextCursor,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Long totalElements
+) {}
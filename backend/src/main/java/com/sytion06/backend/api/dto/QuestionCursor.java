@@ -0,0 +1,35 @@
+package com.sytion06.backend.api.dto;
+
+import com.sytion06.backend.model.Question;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Where a keyset page of questions ended: the (createdAt, id) of its last row. Clients get it as an
+ * opaque token and hand it back to fetch the next page.
+ */
+public record QuestionCursor(Instant createdAt, UUID id) {
+
+    public static QuestionCursor of(Question q) {
+        return new QuestionCursor(q.getCreatedAt(), q.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if {@code token} did not come from {@link #encode()} */
+    public static QuestionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            return new QuestionCursor(Instant.parse(raw.substring(0, bar)), UUID.fromString(raw.substring(bar + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.sytion06.backend.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import com.sytion06.backend.model.Question;
 
-import java.util.Map;
 import java.util.UUID;
 
 public record QuestionDto(
@@ -11,7 +11,7 @@ public record QuestionDto(
         int pageIndex,
         String numberLabel,
         String stem,
-        Map<String, String> choices,   // <-- real object
+        @JsonRawValue String choices,  // stored JSON, written as is (see ChoicesJson)
         String category,
         double confidence,
         boolean needsReview,
@@ -19,16 +19,14 @@ public record QuestionDto(
         boolean hasFigure,
         String pageImageUrl
 ) {
-    public static QuestionDto from(Question q,
-                                   Map<String, String> parsedChoices,
-                                   String pageImageUrl) {
+    public static QuestionDto from(Question q, String pageImageUrl) {
         return new QuestionDto(
                 q.getId(),
                 q.getDocumentId(),
                 q.getPageIndex(),
                 q.getNumberLabel(),
                 q.getStem(),
-                parsedChoices,
+                q.getChoicesJson(),
                 q.getCategory(),
                 q.getConfidence(),
                 q.isNeedsReview(),
@@ -0,0 +1,98 @@
+package com.sytion06.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ProcessingConfig {
+
+    /** Timer for retry backoff and simulated latency: delays are scheduled here, never slept. */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService modelScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "model-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Hands bulk-ingested documents to the job queue as it drains (see IngestService). */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService ingestScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-feeder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Walks server directories for bulk ingest, one at a time, off the request thread (see IngestService). */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ingestReader() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ingest-reader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Moves page images between storage layouts (see PageStoreMigration); the thread starts on first use. */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageMigrator() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "storage-migrator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Rebuilds the question search index (see SearchIndexService). */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService searchIndexer() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "search-indexer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Sends processing events to SSE clients (see DocumentEventStream), so client I/O never blocks processing. */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService eventSender(@Value("${qbank.events.sender-threads:2}") int threads) {
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "event-sender-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs whole-document processing jobs off the request thread. The queue is bounded on
+     * purpose: when it is full, submissions are rejected (HTTP 429) instead of piling up.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor jobExecutor(
+            @Value("${qbank.processing.jobs.workers:2}") int workers,
+            @Value("${qbank.processing.jobs.queue-capacity:50}") int queueCapacity) {
+        AtomicInteger seq = new AtomicInteger();
+        int n = Math.max(1, workers);
+        return new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "doc-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
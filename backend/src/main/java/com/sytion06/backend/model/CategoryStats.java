@@ -0,0 +1,36 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Running totals of the questions in one category, adjusted in the same transaction that saves or
+ * deletes them, so listing categories never has to group the whole question table. A question
+ * without a category is counted under {@code ""}.
+ */
+@Entity
+public class CategoryStats {
+    @Id
+    private String category;
+
+    private long questions;
+    private long needsReview;
+    private long hasFigure;
+
+    protected CategoryStats() {}
+
+    public CategoryStats(String category) {
+        this.category = category;
+    }
+
+    public void add(long questions, long needsReview, long hasFigure) {
+        this.questions += questions;
+        this.needsReview += needsReview;
+        this.hasFigure += hasFigure;
+    }
+
+    public String getCategory() { return category; }
+    public long getQuestions() { return questions; }
+    public long getNeedsReview() { return needsReview; }
+    public long getHasFigure() { return hasFigure; }
+}
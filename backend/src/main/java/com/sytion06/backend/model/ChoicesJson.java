@@ -0,0 +1,33 @@
+package com.sytion06.backend.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+
+/**
+ * The one form {@link Question#getChoicesJson()} is stored in: a compact JSON object of strings,
+ * such as {@code {"A":"1","B":"2"}}, or {@code null}. Because every stored value is valid JSON of
+ * that shape, responses can embed it as it is instead of parsing and re-serializing each row.
+ */
+public final class ChoicesJson {
+
+    private static final ObjectMapper OM = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> CHOICES = new TypeReference<>() {};
+
+    private ChoicesJson() {}
+
+    /**
+     * {@code json} in the stored form. Whatever does not read as a map of strings becomes
+     * {@code null}, which is what the API has always returned for such choices.
+     */
+    public static String normalize(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            Map<String, String> choices = OM.readValue(json, CHOICES);
+            return choices == null ? null : OM.writeValueAsString(choices);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
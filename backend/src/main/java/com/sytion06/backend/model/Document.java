@@ -5,6 +5,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = @Index(name = "idx_document_hash", columnList = "contentHash"))
 public class Document {
     @Id
     private UUID id;
@@ -19,6 +20,11 @@ public class Document {
 
     private Instant createdAt;
 
+    @Column(length = 64)
+    private String contentHash;       // SHA-256 of the PDF bytes, hex
+
+    private UUID sourceDocumentId;    // set when this upload reused another document's extraction
+
     @PrePersist
     void prePersist() {
         if (id == null) id = UUID.randomUUID();
@@ -40,4 +46,10 @@ public class Document {
 
     public String getLastError() { return lastError; }
     public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public UUID getSourceDocumentId() { return sourceDocumentId; }
+    public void setSourceDocumentId(UUID sourceDocumentId) { this.sourceDocumentId = sourceDocumentId; }
 }
@@ -1,5 +1,5 @@
 package com.sytion06.backend.model;
 
 public enum DocumentStatus {
-    UPLOADED, PROCESSING, DONE, FAILED
+    UPLOADED, QUEUED, PROCESSING, DONE, FAILED
 }
@@ -0,0 +1,38 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A document a bulk ingest stored for processing but has not handed to the job queue yet. The
+ * row goes once the document is submitted, so after a restart the feeder picks up where it left
+ * off (see IngestService).
+ */
+@Entity
+public class IngestPending {
+    @Id
+    private UUID documentId;
+
+    private UUID ingestId;
+
+    private String source;            // of the ingest, e.g. "zip:papers.zip"
+
+    private Instant startedAt;        // of the ingest
+
+    protected IngestPending() {}
+
+    public IngestPending(UUID documentId, UUID ingestId, String source, Instant startedAt) {
+        this.documentId = documentId;
+        this.ingestId = ingestId;
+        this.source = source;
+        this.startedAt = startedAt;
+    }
+
+    public UUID getDocumentId() { return documentId; }
+    public UUID getIngestId() { return ingestId; }
+    public String getSource() { return source; }
+    public Instant getStartedAt() { return startedAt; }
+}
@@ -0,0 +1,5 @@
+package com.sytion06.backend.model;
+
+public enum JobStatus {
+    QUEUED, RUNNING, FINISHED, FAILED
+}
@@ -0,0 +1,66 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/** Per-page processing progress, so a reprocess can skip pages that already succeeded. */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_checkpoint_page", columnNames = {"documentId", "pageIndex"}))
+public class PageCheckpoint {
+    @Id
+    private UUID id;
+
+    private UUID documentId;
+
+    private int pageIndex;        // 0-based page
+
+    @Enumerated(EnumType.STRING)
+    private PageState state;
+
+    @Enumerated(EnumType.STRING)
+    private PageMode mode;        // how the page was last sent to the model
+
+    private int attempts;         // processing runs that reached this page
+    private int questionCount;
+
+    @Lob
+    private String lastError;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) id = TimeOrderedUuid.next();
+        if (state == null) state = PageState.PENDING;
+        updatedAt = Instant.now();
+    }
+
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
+    public UUID getDocumentId() { return documentId; }
+    public void setDocumentId(UUID documentId) { this.documentId = documentId; }
+
+    public int getPageIndex() { return pageIndex; }
+    public void setPageIndex(int pageIndex) { this.pageIndex = pageIndex; }
+
+    public PageState getState() { return state; }
+    public void setState(PageState state) { this.state = state; }
+
+    public PageMode getMode() { return mode; }
+    public void setMode(PageMode mode) { this.mode = mode; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public int getQuestionCount() { return questionCount; }
+    public void setQuestionCount(int questionCount) { this.questionCount = questionCount; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,9 @@
+package com.sytion06.backend.model;
+
+/** How a page is sent to the model. */
+public enum PageMode {
+    /** Text layer only; no image in the request. For clean born-digital pages without figures. */
+    TEXT,
+    /** Rendered page image plus whatever text layer exists. For scans and pages with figures. */
+    VISION
+}
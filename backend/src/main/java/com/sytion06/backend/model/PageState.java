@@ -0,0 +1,5 @@
+package com.sytion06.backend.model;
+
+public enum PageState {
+    PENDING, DONE, FAILED
+}
@@ -0,0 +1,57 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(indexes = @Index(name = "idx_job_document", columnList = "documentId"))
+public class ProcessingJob {
+    @Id
+    private UUID id;
+
+    private UUID documentId;
+
+    @Enumerated(EnumType.STRING)
+    private JobStatus status;
+
+    private boolean fullReprocess;    // false = resume from page checkpoints
+
+    @Lob
+    private String error;
+
+    private Instant createdAt;    // when the job entered the queue
+    private Instant startedAt;    // when a worker picked it up
+    private Instant finishedAt;
+
+    @PrePersist
+    void prePersist() {
+        if (id == null) id = UUID.randomUUID();
+        if (createdAt == null) createdAt = Instant.now();
+        if (status == null) status = JobStatus.QUEUED;
+    }
+
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
+    public UUID getDocumentId() { return documentId; }
+    public void setDocumentId(UUID documentId) { this.documentId = documentId; }
+
+    public JobStatus getStatus() { return status; }
+    public void setStatus(JobStatus status) { this.status = status; }
+
+    public boolean isFullReprocess() { return fullReprocess; }
+    public void setFullReprocess(boolean fullReprocess) { this.fullReprocess = fullReprocess; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -5,6 +5,13 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
+// keyset paging walks these newest first; (createdAt, id) is unique, so no row is skipped or repeated
+@Table(indexes = {
+        @Index(name = "idx_question_created", columnList = "createdAt DESC, id DESC"),
+        @Index(name = "idx_question_category_created", columnList = "category, createdAt DESC, id DESC"),
+        // a page is replaced (and first tallied) whenever it is reprocessed
+        @Index(name = "idx_question_page", columnList = "documentId, pageIndex")
+})
 public class Question {
     @Id
     private UUID id;
@@ -18,7 +25,10 @@ public class Question {
     private String stem;          // main question text
 
     @Lob
-    private String choicesJson;   // store choices as JSON string for MVP (A/B/C/D)
+    private String choicesJson;   // {"A":"...","B":"..."} as ChoicesJson keeps it, or null
+
+    @Lob
+    private String unreadableChoices; // stored choices ChoicesJsonMigration could not read, kept as they were
 
     @Column(name = "category")
     private String category;      // algebra, trig, vectors, geometry, probability...
@@ -34,8 +44,14 @@ public class Question {
 
     @PrePersist
     void prePersist() {
-        if (id == null) id = UUID.randomUUID();
+        if (id == null) id = TimeOrderedUuid.next();
         if (createdAt == null) createdAt = Instant.now();
+        choicesJson = ChoicesJson.normalize(choicesJson);
+    }
+
+    @PreUpdate
+    void preUpdate() {
+        choicesJson = ChoicesJson.normalize(choicesJson);
     }
 
     // getters/setters omitted for brevity (generate in IDE)
@@ -89,6 +105,14 @@ public class Question {
         this.choicesJson = choicesJson;
     }
 
+    public String getUnreadableChoices() {
+        return unreadableChoices;
+    }
+
+    public void setUnreadableChoices(String unreadableChoices) {
+        this.unreadableChoices = unreadableChoices;
+    }
+
     public String getCategory() {
         return category;
     }
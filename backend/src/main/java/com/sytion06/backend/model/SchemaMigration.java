@@ -0,0 +1,27 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+
+/** Marks a one-off data migration as done, so it does not run again on the next start. */
+@Entity
+public class SchemaMigration {
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    private Instant appliedAt;
+
+    protected SchemaMigration() {}
+
+    public SchemaMigration(String id) {
+        this.id = id;
+        this.appliedAt = Instant.now();
+    }
+
+    public String getId() { return id; }
+    public Instant getAppliedAt() { return appliedAt; }
+}
@@ -0,0 +1,98 @@
+package com.sytion06.backend.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The search terms of one question with the BM25 weight of each (times 100, without the IDF part,
+ * which depends on the whole index): the stored form of the question search index, one row per
+ * question, written in the same transaction as the question. The posting lists that queries run
+ * on are these rows inverted, and are built from them when the application starts.
+ * {@code category} is lower-cased.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_term_vector_page", columnList = "documentId, pageIndex"))
+public class TermVector implements Persistable<UUID> {
+
+    /** Weights are below 100 * (K1 + 1) = 220, so one unsigned byte holds them. */
+    private static final int MAX_WEIGHT = 255;
+
+    @Id
+    private UUID questionId;
+
+    private UUID documentId;
+
+    private int pageIndex;
+
+    private String category;
+
+    // each term as its UTF-8 length (one byte) and bytes, followed by its weight (one byte)
+    @Column(length = 1_000_000)
+    private byte[] terms;
+
+    // rows are only ever inserted and bulk-deleted; this spares saveAll a SELECT per row
+    @Transient
+    private boolean persisted;
+
+    protected TermVector() {}
+
+    public TermVector(Question q, Map<String, Integer> weights) {
+        this.questionId = q.getId();
+        this.documentId = q.getDocumentId();
+        this.pageIndex = q.getPageIndex();
+        this.category = q.getCategory() == null ? null : q.getCategory().toLowerCase(Locale.ROOT);
+        this.terms = encode(weights);
+    }
+
+    /** Calls {@code action} with each term of an encoded {@link #getTerms()} and its weight. */
+    public static void decode(byte[] terms, ObjIntConsumer<String> action) {
+        int i = 0;
+        while (i < terms.length) {
+            int length = terms[i++] & 0xFF;
+            String term = new String(terms, i, length, StandardCharsets.UTF_8);
+            i += length;
+            action.accept(term, terms[i++] & 0xFF);
+        }
+    }
+
+    private static byte[] encode(Map<String, Integer> weights) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(weights.size() * 8);
+        for (Map.Entry<String, Integer> e : weights.entrySet()) {
+            // terms are at most SearchTokenizer.MAX_TERM_LENGTH characters, well under 255 bytes
+            byte[] term = e.getKey().getBytes(StandardCharsets.UTF_8);
+            out.write(term.length);
+            out.writeBytes(term);
+            out.write(Math.min(e.getValue(), MAX_WEIGHT));
+        }
+        return out.toByteArray();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Override
+    public UUID getId() {
+        return questionId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    public UUID getQuestionId() { return questionId; }
+    public UUID getDocumentId() { return documentId; }
+    public int getPageIndex() { return pageIndex; }
+    public String getCategory() { return category; }
+    public byte[] getTerms() { return terms; }
+}
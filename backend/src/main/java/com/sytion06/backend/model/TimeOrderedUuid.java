@@ -0,0 +1,39 @@
+package com.sytion06.backend.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version 7 UUIDs (RFC 9562): 48 bits of Unix milliseconds, then a 12-bit sequence and random
+ * bits. Keys created close together sort close together, so bulk inserts append to the end of
+ * the primary key index instead of landing on random pages of it. Within one millisecond the
+ * sequence keeps keys of this process strictly increasing.
+ */
+public final class TimeOrderedUuid {
+
+    private static long lastMillis;
+    private static int sequence;
+
+    private TimeOrderedUuid() {}
+
+    public static UUID next() {
+        long millis;
+        int seq;
+        synchronized (TimeOrderedUuid.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis) {
+                sequence = (sequence + 1) & 0xFFF;
+                // sequence exhausted: borrow the next millisecond rather than go backwards
+                if (sequence == 0) millis++;
+            } else {
+                sequence = ThreadLocalRandom.current().nextInt(0x800);
+            }
+            lastMillis = millis;
+            seq = sequence;
+        }
+
+        long msb = (millis << 16) | 0x7000L | seq;
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
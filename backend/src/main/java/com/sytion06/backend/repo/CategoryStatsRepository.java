@@ -0,0 +1,11 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.CategoryStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface CategoryStatsRepository extends JpaRepository<CategoryStats, String> {
+
+    List<CategoryStats> findByQuestionsGreaterThanOrderByCategoryAsc(long questions);
+}
@@ -1,8 +1,18 @@
 package com.sytion06.backend.repo;
 
 import com.sytion06.backend.model.Document;
+import com.sytion06.backend.model.DocumentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface DocumentRepository extends JpaRepository<Document, UUID> {}
+public interface DocumentRepository extends JpaRepository<Document, UUID> {
+    Optional<Document> findFirstByContentHashAndStatusOrderByCreatedAtAsc(String contentHash, DocumentStatus status);
+
+    @Query("SELECT new com.sytion06.backend.repo.DocumentSummary(d.id, d.filename, d.status, d.createdAt) "
+            + "FROM Document d ORDER BY d.createdAt DESC")
+    List<DocumentSummary> findSummaries();
+}
@@ -0,0 +1,9 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.DocumentStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** A document without its {@code lastError} LOB, for the document list. */
+public record DocumentSummary(UUID id, String filename, DocumentStatus status, Instant createdAt) {}
@@ -0,0 +1,12 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.IngestPending;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface IngestPendingRepository extends JpaRepository<IngestPending, UUID> {
+
+    List<IngestPending> findAllByOrderByStartedAtAscDocumentIdAsc();
+}
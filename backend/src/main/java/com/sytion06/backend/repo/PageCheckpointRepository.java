@@ -0,0 +1,21 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.PageCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PageCheckpointRepository extends JpaRepository<PageCheckpoint, UUID> {
+    List<PageCheckpoint> findByDocumentIdOrderByPageIndexAsc(UUID documentId);
+
+    Optional<PageCheckpoint> findByDocumentIdAndPageIndex(UUID documentId, int pageIndex);
+
+    @Modifying
+    @Query("DELETE FROM PageCheckpoint c WHERE c.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") UUID documentId);
+}
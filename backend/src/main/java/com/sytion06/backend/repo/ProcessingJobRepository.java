@@ -0,0 +1,17 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.JobStatus;
+import com.sytion06.backend.model.ProcessingJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, UUID> {
+    boolean existsByDocumentIdAndStatusIn(UUID documentId, Collection<JobStatus> statuses);
+
+    List<ProcessingJob> findByStatusIn(Collection<JobStatus> statuses);
+
+    List<ProcessingJob> findByDocumentIdOrderByCreatedAtDesc(UUID documentId);
+}
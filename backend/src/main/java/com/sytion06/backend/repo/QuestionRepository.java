@@ -2,28 +2,110 @@ package com.sytion06.backend.repo;
 
 import com.sytion06.backend.model.Question;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 public interface QuestionRepository extends JpaRepository<Question, UUID> {
+
+    // the select list of the summary queries below; stem and choicesJson are LOBs
+    String SUMMARY = "SELECT new com.sytion06.backend.repo.QuestionSummary(q.id, q.documentId, q.pageIndex, "
+            + "q.numberLabel, SUBSTRING(CAST(q.stem AS String), 1, " + QuestionSummary.STEM_PREVIEW_LENGTH + "), "
+            + "q.category, q.confidence, q.needsReview, q.hasFigure, q.createdAt) FROM Question q ";
+
     List<Question> findByDocumentIdOrderByPageIndexAsc(UUID documentId);
 
-    void deleteByDocumentId(UUID documentId);
+    // single DELETE statements; derived deletes would load and remove every row one by one
+    @Modifying
+    @Query("DELETE FROM Question q WHERE q.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") UUID documentId);
+
+    @Modifying
+    @Query("DELETE FROM Question q WHERE q.documentId = :documentId AND q.pageIndex = :pageIndex")
+    int deleteByDocumentIdAndPageIndex(@Param("documentId") UUID documentId, @Param("pageIndex") int pageIndex);
+
+    long countByDocumentId(UUID documentId);
+
+    // id-ordered batches for one-off migrations
+    List<Question> findAllByOrderByIdAsc(Limit limit);
+
+    List<Question> findByIdGreaterThanOrderByIdAsc(UUID id, Limit limit);
+
+    @Query("SELECT DISTINCT q.documentId FROM Question q")
+    List<UUID> findDocumentIds();
 
     Page<Question> findByCategory(String category, Pageable pageable);
 
     Page<Question> findByCategoryOrderByCreatedAtDesc(String category, Pageable pageable);
 
-    @Query("SELECT q.category, COUNT(q) FROM Question q GROUP BY q.category")
-    List<Object[]> countByCategory();
+    // (category, questions, needing review, with a figure) rows for CategoryStatsService
+    String TALLY = "SELECT q.category, COUNT(q), SUM(CASE WHEN q.needsReview = true THEN 1 ELSE 0 END),"
+            + " SUM(CASE WHEN q.hasFigure = true THEN 1 ELSE 0 END) FROM Question q";
+
+    @Query(TALLY + " GROUP BY q.category")
+    List<Object[]> tallyByCategory();
+
+    @Query(TALLY + " WHERE q.documentId = :documentId GROUP BY q.category")
+    List<Object[]> tallyDocument(@Param("documentId") UUID documentId);
+
+    @Query(TALLY + " WHERE q.documentId = :documentId AND q.pageIndex = :pageIndex GROUP BY q.category")
+    List<Object[]> tallyPage(@Param("documentId") UUID documentId, @Param("pageIndex") int pageIndex);
 
     Page<Question> findByCategoryIgnoreCase(String category, Pageable pageable);
 
-    Page<Question> findByStemContainingIgnoreCase(String stem, Pageable pageable);
+    // Slice variants skip the count query that Page runs on every request
+    Slice<Question> findSliceBy(Pageable pageable);
+
+    Slice<Question> findSliceByCategoryIgnoreCase(String category, Pageable pageable);
+
+    // Keyset pages, newest first. "createdAt <= :createdAt AND (...)" rather than a plain OR lets
+    // the database seek into the index instead of filtering it from the start. The category
+    // queries order by category too, although it is fixed, so the category index is read in order.
+    @Query("SELECT q FROM Question q ORDER BY q.createdAt DESC, q.id DESC")
+    List<Question> findNewest(Limit limit);
+
+    @Query("SELECT q FROM Question q WHERE q.createdAt <= :createdAt AND (q.createdAt < :createdAt OR q.id < :id) "
+            + "ORDER BY q.createdAt DESC, q.id DESC")
+    List<Question> findNewestBefore(@Param("createdAt") Instant createdAt, @Param("id") UUID id, Limit limit);
+
+    @Query("SELECT q FROM Question q WHERE q.category = :category ORDER BY q.category, q.createdAt DESC, q.id DESC")
+    List<Question> findNewestInCategory(@Param("category") String category, Limit limit);
+
+    @Query("SELECT q FROM Question q WHERE q.category = :category AND q.createdAt <= :createdAt "
+            + "AND (q.createdAt < :createdAt OR q.id < :id) ORDER BY q.category, q.createdAt DESC, q.id DESC")
+    List<Question> findNewestInCategoryBefore(@Param("category") String category, @Param("createdAt") Instant createdAt,
+                                              @Param("id") UUID id, Limit limit);
+
+    @Query(SUMMARY + "WHERE q.documentId = :documentId ORDER BY q.pageIndex")
+    List<QuestionSummary> findSummariesByDocumentId(@Param("documentId") UUID documentId);
+
+    @Query(SUMMARY)
+    Slice<QuestionSummary> findSummaries(Pageable pageable);
+
+    @Query(SUMMARY + "WHERE LOWER(q.category) = LOWER(:category)")
+    Slice<QuestionSummary> findSummariesByCategory(@Param("category") String category, Pageable pageable);
+
+    @Query(SUMMARY + "ORDER BY q.createdAt DESC, q.id DESC")
+    List<QuestionSummary> findNewestSummaries(Limit limit);
+
+    @Query(SUMMARY + "WHERE q.createdAt <= :createdAt AND (q.createdAt < :createdAt OR q.id < :id) "
+            + "ORDER BY q.createdAt DESC, q.id DESC")
+    List<QuestionSummary> findNewestSummariesBefore(@Param("createdAt") Instant createdAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SUMMARY + "WHERE q.category = :category ORDER BY q.category, q.createdAt DESC, q.id DESC")
+    List<QuestionSummary> findNewestSummariesInCategory(@Param("category") String category, Limit limit);
 
-    Page<Question> findByCategoryIgnoreCaseAndStemContainingIgnoreCase(String category, String stem, Pageable pageable);
+    @Query(SUMMARY + "WHERE q.category = :category AND q.createdAt <= :createdAt "
+            + "AND (q.createdAt < :createdAt OR q.id < :id) ORDER BY q.category, q.createdAt DESC, q.id DESC")
+    List<QuestionSummary> findNewestSummariesInCategoryBefore(@Param("category") String category,
+                                                              @Param("createdAt") Instant createdAt,
+                                                              @Param("id") UUID id, Limit limit);
 }
@@ -0,0 +1,23 @@
+package com.sytion06.backend.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A question as list views show it: no choices, and only the first {@value #STEM_PREVIEW_LENGTH}
+ * characters of the stem, cut in the query so the rest of the LOB is never read or sent.
+ */
+public record QuestionSummary(
+        UUID id,
+        UUID documentId,
+        int pageIndex,
+        String numberLabel,
+        String stemPreview,
+        String category,
+        double confidence,
+        boolean needsReview,
+        boolean hasFigure,
+        Instant createdAt
+) {
+    public static final int STEM_PREVIEW_LENGTH = 80;
+}
@@ -0,0 +1,7 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.SchemaMigration;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SchemaMigrationRepository extends JpaRepository<SchemaMigration, String> {
+}
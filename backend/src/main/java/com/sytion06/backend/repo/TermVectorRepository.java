@@ -0,0 +1,35 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.model.TermVector;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface TermVectorRepository extends JpaRepository<TermVector, UUID> {
+
+    @Modifying
+    @Query("DELETE FROM TermVector v WHERE v.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") UUID documentId);
+
+    @Modifying
+    @Query("DELETE FROM TermVector v WHERE v.documentId = :documentId AND v.pageIndex = :pageIndex")
+    int deleteByDocumentIdAndPageIndex(@Param("documentId") UUID documentId, @Param("pageIndex") int pageIndex);
+
+    /** The encoded terms of the questions on one page; to take them off the posting lists before deleting them. */
+    @Query("SELECT v.terms FROM TermVector v WHERE v.documentId = :documentId AND v.pageIndex = :pageIndex")
+    List<byte[]> termsOfPage(@Param("documentId") UUID documentId, @Param("pageIndex") int pageIndex);
+
+    @Query("SELECT v.terms FROM TermVector v WHERE v.documentId = :documentId")
+    List<byte[]> termsOfDocument(@Param("documentId") UUID documentId);
+
+    /** First batch of {@link #findByQuestionIdGreaterThanOrderByQuestionIdAsc}. */
+    List<TermVector> findAllByOrderByQuestionIdAsc(Limit limit);
+
+    /** Keyset pagination in question id order, for loading the posting lists. */
+    List<TermVector> findByQuestionIdGreaterThanOrderByQuestionIdAsc(UUID after, Limit limit);
+}
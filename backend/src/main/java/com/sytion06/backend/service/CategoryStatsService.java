@@ -0,0 +1,159 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.CategoryStats;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.repo.CategoryStatsRepository;
+import com.sytion06.backend.repo.QuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps {@link CategoryStats} in step with the question table. Whoever saves or deletes questions
+ * collects the change in a {@link Delta} and hands it to {@link #apply} as the last write of the
+ * same transaction, so the totals commit or roll back with the questions they count.
+ *
+ * <p>Pages are committed from several workers at once. Stats writes are serialized by a lock that
+ * is held until the writing transaction ends: two pages bringing the first question of a new
+ * category cannot both insert its row, and {@link #rebuild} never counts over a change that has
+ * yet to commit. Since {@code apply} comes last, the lock is held only for a few row updates and
+ * the commit.
+ */
+@Service
+public class CategoryStatsService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryStatsService.class);
+
+    /** Per-category changes to apply: {questions, needing review, with a figure}. */
+    public static final class Delta {
+        private final Map<String, long[]> byCategory = new HashMap<>();
+
+        public Delta add(List<Question> saved) {
+            for (Question q : saved) {
+                long[] d = byCategory.computeIfAbsent(key(q.getCategory()), k -> new long[3]);
+                d[0]++;
+                if (q.isNeedsReview()) d[1]++;
+                if (q.isHasFigure()) d[2]++;
+            }
+            return this;
+        }
+
+        Delta subtract(List<Object[]> tally) {
+            for (Object[] row : tally) {
+                long[] d = byCategory.computeIfAbsent(key((String) row[0]), k -> new long[3]);
+                for (int i = 0; i < 3; i++) d[i] -= ((Number) row[i + 1]).longValue();
+            }
+            return this;
+        }
+
+        boolean isEmpty() {
+            return byCategory.values().stream().allMatch(d -> d[0] == 0 && d[1] == 0 && d[2] == 0);
+        }
+    }
+
+    private final CategoryStatsRepository stats;
+    private final QuestionRepository questions;
+    private final TransactionTemplate tx;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public CategoryStatsService(CategoryStatsRepository stats, QuestionRepository questions, TransactionTemplate tx) {
+        this.stats = stats;
+        this.questions = questions;
+        this.tx = tx;
+    }
+
+    /** Takes off the questions of a page about to be deleted; call before deleting them. */
+    public Delta removingPage(UUID docId, int pageIndex) {
+        return new Delta().subtract(questions.tallyPage(docId, pageIndex));
+    }
+
+    /** Takes off the questions of a document about to be deleted; call before deleting them. */
+    public Delta removingDocument(UUID docId) {
+        return new Delta().subtract(questions.tallyDocument(docId));
+    }
+
+    /** Writes {@code delta}; joins the caller's transaction, and should be its last write. */
+    public void apply(Delta delta) {
+        if (delta.isEmpty()) return;
+        writeLock.lock();
+        boolean releasedOnCompletion = false;
+        try {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        writeLock.unlock();
+                    }
+                });
+                releasedOnCompletion = true;
+            }
+            Map<String, CategoryStats> rows = new HashMap<>();
+            for (CategoryStats s : stats.findAllById(delta.byCategory.keySet())) rows.put(s.getCategory(), s);
+            for (Map.Entry<String, long[]> e : delta.byCategory.entrySet()) {
+                long[] d = e.getValue();
+                rows.computeIfAbsent(e.getKey(), CategoryStats::new).add(d[0], d[1], d[2]);
+            }
+            // flushed here rather than at commit, so the rows are locked for as short a time as possible
+            stats.saveAllAndFlush(rows.values());
+        } finally {
+            if (!releasedOnCompletion) writeLock.unlock();
+        }
+    }
+
+    /** Categories that have questions, by name. */
+    public List<CategoryStats> categories() {
+        return stats.findByQuestionsGreaterThanOrderByCategoryAsc(0);
+    }
+
+    /** Questions in {@code category}, matched exactly. */
+    public long count(String category) {
+        return stats.findById(key(category)).map(CategoryStats::getQuestions).orElse(0L);
+    }
+
+    /** Questions in {@code category}, ignoring case. */
+    public long countIgnoreCase(String category) {
+        return categories().stream()
+                .filter(s -> s.getCategory().equalsIgnoreCase(category))
+                .mapToLong(CategoryStats::getQuestions)
+                .sum();
+    }
+
+    /** Recounts every category from the question table, e.g. after editing the database by hand. */
+    public List<CategoryStats> rebuild() {
+        writeLock.lock();
+        try {
+            tx.executeWithoutResult(status -> {
+                stats.deleteAllInBatch();
+                Map<String, CategoryStats> rows = new HashMap<>();
+                for (Object[] row : questions.tallyByCategory()) {
+                    rows.computeIfAbsent(key((String) row[0]), CategoryStats::new).add(
+                            ((Number) row[1]).longValue(), ((Number) row[2]).longValue(), ((Number) row[3]).longValue());
+                }
+                stats.saveAll(rows.values());
+            });
+        } finally {
+            writeLock.unlock();
+        }
+        return categories();
+    }
+
+    /** Counts the questions that were saved before the stats table existed; runs before the web server starts. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (stats.count() == 0 && questions.count() > 0) {
+            int categories = rebuild().size();
+            log.info("Counted questions in {} categories", categories);
+        }
+    }
+
+    private static String key(String category) {
+        return category == null ? "" : category;
+    }
+}
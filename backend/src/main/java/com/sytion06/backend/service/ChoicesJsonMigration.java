@@ -0,0 +1,87 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.ChoicesJson;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.model.SchemaMigration;
+import com.sytion06.backend.repo.QuestionRepository;
+import com.sytion06.backend.repo.SchemaMigrationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Brings the choices of questions saved before {@link ChoicesJson} into its stored form, once.
+ * Responses write stored choices out as they are, so a row still holding the model's raw output
+ * (extra whitespace, numbers instead of strings, or text that is not JSON at all) would otherwise
+ * reach clients as is. Choices that do not read as a map of strings are set to null, as the API
+ * always showed them, but their text is first copied to {@code unreadableChoices} and the ids of
+ * those questions are logged. Runs in batches of {@value #BATCH} questions, each in its own
+ * transaction.
+ */
+@Service
+public class ChoicesJsonMigration implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ChoicesJsonMigration.class);
+    static final String ID = "choices-json-normalized";
+    private static final int BATCH = 1000;
+
+    private final QuestionRepository questions;
+    private final SchemaMigrationRepository migrations;
+    private final TransactionTemplate tx;
+
+    public ChoicesJsonMigration(QuestionRepository questions, SchemaMigrationRepository migrations, TransactionTemplate tx) {
+        this.questions = questions;
+        this.migrations = migrations;
+        this.tx = tx;
+    }
+
+    /** Runs before the web server starts, so no request sees a row that has not been converted yet. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (migrations.existsById(ID)) return;
+
+        int changed = 0;
+        List<UUID> unreadable = new ArrayList<>();
+        UUID after = null;
+        while (true) {
+            UUID from = after;
+            int[] batchChanged = {0};
+            List<Question> batch = tx.execute(status -> {
+                List<Question> qs = from == null
+                        ? questions.findAllByOrderByIdAsc(Limit.of(BATCH))
+                        : questions.findByIdGreaterThanOrderByIdAsc(from, Limit.of(BATCH));
+                for (Question q : qs) {
+                    String stored = q.getChoicesJson();
+                    String normalized = ChoicesJson.normalize(stored);
+                    if (Objects.equals(normalized, stored)) continue;
+                    if (normalized == null && !stored.isBlank()) {
+                        q.setUnreadableChoices(stored);
+                        unreadable.add(q.getId());
+                    }
+                    q.setChoicesJson(normalized);            // written back when the transaction commits
+                    batchChanged[0]++;
+                }
+                return qs;
+            });
+            changed += batchChanged[0];
+            if (batch == null || batch.isEmpty()) break;
+            after = batch.get(batch.size() - 1).getId();
+            if (batch.size() < BATCH) break;
+        }
+
+        migrations.save(new SchemaMigration(ID));
+        if (changed > 0) log.info("Normalized the choices of {} question(s)", changed);
+        if (!unreadable.isEmpty()) {
+            log.warn("Could not read the choices of {} question(s); they are now null, and the stored text is kept in"
+                    + " their unreadable_choices column: {}", unreadable.size(), unreadable);
+        }
+    }
+}
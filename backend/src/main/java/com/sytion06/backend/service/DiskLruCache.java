@@ -0,0 +1,132 @@
+package com.sytion06.backend.service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Small size-bounded key/value store on local disk. Keys are hex digests; entries live under
+ * {@code dir/<first two chars>/<key><suffix>}. A read refreshes the file's modified time, so
+ * eviction (oldest modified first) behaves as LRU. All failures degrade to a cache miss.
+ */
+public class DiskLruCache {
+
+    private final Path dir;
+    private final long maxBytes;
+    private final String suffix;
+    private final AtomicLong sizeBytes = new AtomicLong(-1);   // -1 = not scanned yet
+
+    public DiskLruCache(Path dir, long maxBytes, String suffix) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.suffix = suffix;
+    }
+
+    public Path path(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + suffix);
+    }
+
+    public Optional<byte[]> get(String key) {
+        Path p = path(key);
+        try {
+            byte[] bytes = Files.readAllBytes(p);
+            Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(bytes);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Like {@link #get} but for callers that stream the entry from disk themselves. */
+    public Optional<Path> file(String key) {
+        Path p = path(key);
+        try {
+            Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(p);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        Path p = path(key);
+        try {
+            Files.createDirectories(p.getParent());
+            Path tmp = Files.createTempFile(p.getParent(), key, ".tmp");
+            Files.write(tmp, value);
+            long previous = Files.exists(p) ? Files.size(p) : 0;
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (currentSize() + value.length - previous > maxBytes) {
+                evict();
+            } else {
+                sizeBytes.addAndGet(value.length - previous);
+            }
+        } catch (IOException ignore) {
+            // a failed write just means the next lookup misses
+        }
+    }
+
+    public void remove(String key) {
+        try {
+            Path p = path(key);
+            long size = Files.exists(p) ? Files.size(p) : 0;
+            if (Files.deleteIfExists(p)) sizeBytes.addAndGet(-size);
+        } catch (IOException ignore) {
+        }
+    }
+
+    private long currentSize() {
+        long s = sizeBytes.get();
+        if (s >= 0) return s;
+        synchronized (this) {
+            if (sizeBytes.get() < 0) {
+                sizeBytes.set(listEntries().stream().mapToLong(Entry::size).sum());
+            }
+            return sizeBytes.get();
+        }
+    }
+
+    /** Drops least recently used entries until the cache is back under 90% of its budget. */
+    private synchronized void evict() {
+        List<Entry> entries = listEntries();
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+
+        long total = entries.stream().mapToLong(Entry::size).sum();
+        long target = maxBytes / 10 * 9;
+        for (Entry e : entries) {
+            if (total <= target) break;
+            try {
+                Files.deleteIfExists(e.path());
+                total -= e.size();
+            } catch (IOException ignore) {
+            }
+        }
+        sizeBytes.set(total);
+    }
+
+    private record Entry(Path path, long size, FileTime lastUsed) {}
+
+    private List<Entry> listEntries() {
+        List<Entry> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(suffix)).forEach(p -> {
+                try {
+                    BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                    out.add(new Entry(p, a.size(), a.lastModifiedTime()));
+                } catch (IOException ignore) {
+                    // removed concurrently
+                }
+            });
+        } catch (IOException ignore) {
+        }
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.Document;
+import com.sytion06.backend.model.DocumentStatus;
+import com.sytion06.backend.repo.DocumentRepository;
+import com.sytion06.backend.service.pages.PageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stores uploaded PDFs under {@code storage/{docId}.pdf}. The SHA-256 of the file is computed
+ * while it is written; when a finished document with the same hash exists, the new document
+ * is linked to that extraction instead of being processed again.
+ */
+@Service
+public class DocumentIntakeService {
+
+    private final Path storageDir = Paths.get("storage");
+    private final DocumentRepository documents;
+    private final PageCheckpointService checkpoints;
+    private final PageStore pageStore;
+    private final long maxUploadBytes;
+
+    public DocumentIntakeService(DocumentRepository documents, PageCheckpointService checkpoints, PageStore pageStore,
+                                 @Value("${qbank.upload.max-mb:500}") int maxUploadMb) {
+        this.documents = documents;
+        this.checkpoints = checkpoints;
+        this.pageStore = pageStore;
+        this.maxUploadBytes = Math.max(1, maxUploadMb) * 1024L * 1024L;
+    }
+
+    public long maxUploadBytes() {
+        return maxUploadBytes;
+    }
+
+    /** Outcome of an upload; {@code source} is the reused document on a dedup hit. */
+    public record IntakeResult(Document document, Document source) {
+        public boolean deduplicated() { return source != null; }
+    }
+
+    /** A file written to storage and hashed, not yet a document. */
+    public record StagedFile(Path file, String filename, String hash, long size) {}
+
+    public IntakeResult store(InputStream in, String filename) throws IOException {
+        return commit(List.of(stage(in, filename))).get(0);
+    }
+
+    /**
+     * Like {@link #store}, for a whole PDF from a client: the header and the size limit are
+     * checked in the same pass that writes and hashes the file.
+     *
+     * @throws UploadRejectedException not a PDF, or larger than {@code qbank.upload.max-mb}
+     */
+    public IntakeResult storePdf(InputStream in, String filename) throws IOException {
+        return store(new PdfUploadStream(in, 0, maxUploadBytes, true), filename);
+    }
+
+    /** Streams {@code in} into a temp file under storage, hashing it on the way. */
+    public StagedFile stage(InputStream in, String filename) throws IOException {
+        Files.createDirectories(storageDir);
+
+        Path tmp = Files.createTempFile(storageDir, "upload-", ".part");
+        try {
+            MessageDigest md = sha256();
+            long size;
+            try (DigestInputStream digesting = new DigestInputStream(in, md);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                size = digesting.transferTo(out);
+            }
+            return new StagedFile(tmp, filename, HexFormat.of().formatHex(md.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Turns staged files into documents. The rows are inserted together (one transaction, batched
+     * inserts); each file then moves to {@code storage/{docId}.pdf} and is linked to an earlier
+     * extraction of the same content, if there is one.
+     */
+    public List<IntakeResult> commit(List<StagedFile> staged) throws IOException {
+        try {
+            List<Document> docs = new ArrayList<>(staged.size());
+            for (StagedFile f : staged) {
+                Document doc = new Document();
+                doc.setFilename(f.filename());
+                doc.setStatus(DocumentStatus.UPLOADED);
+                doc.setContentHash(f.hash());
+                docs.add(doc);
+            }
+            docs = documents.saveAll(docs); // generates ids via @PrePersist
+
+            List<IntakeResult> out = new ArrayList<>(docs.size());
+            for (int i = 0; i < docs.size(); i++) {
+                Document doc = docs.get(i);
+                Files.move(staged.get(i).file(), storageDir.resolve(doc.getId() + ".pdf"), StandardCopyOption.REPLACE_EXISTING);
+
+                Optional<Document> source = documents.findFirstByContentHashAndStatusOrderByCreatedAtAsc(doc.getContentHash(), DocumentStatus.DONE);
+                out.add(source.isEmpty() ? new IntakeResult(doc, null) : new IntakeResult(linkTo(doc, source.get()), source.get()));
+            }
+            return out;
+        } finally {
+            for (StagedFile f : staged) {
+                Files.deleteIfExists(f.file());
+            }
+        }
+    }
+
+    private Document linkTo(Document doc, Document source) throws IOException {
+        pageStore.copy(source.getId(), doc.getId());
+        checkpoints.cloneExtraction(source.getId(), doc.getId());
+
+        doc.setSourceDocumentId(source.getId());
+        doc.setStatus(DocumentStatus.DONE);
+        doc.setLastError(source.getLastError());
+        return documents.save(doc);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
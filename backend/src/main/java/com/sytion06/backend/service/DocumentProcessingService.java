@@ -1,59 +1,132 @@
 package com.sytion06.backend.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.openai.models.ResponseFormatJsonObject;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.sytion06.backend.model.Document;
 import com.sytion06.backend.model.DocumentStatus;
+import com.sytion06.backend.model.PageMode;
 import com.sytion06.backend.model.Question;
 import com.sytion06.backend.repo.DocumentRepository;
 import com.sytion06.backend.repo.QuestionRepository;
-import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
-import com.openai.models.responses.*;
-import com.openai.models.responses.Response;
-import com.openai.models.responses.ResponseCreateParams;
-import com.openai.models.chat.completions.ChatCompletionCreateParams;
-
-import org.apache.pdfbox.Loader;
+import com.sytion06.backend.service.extract.ModelRateLimitException;
+import com.sytion06.backend.service.extract.PageInput;
+import com.sytion06.backend.service.extract.QuestionExtractor;
+import com.sytion06.backend.service.pages.PageStore;
+
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class DocumentProcessingService {
 
     private final DocumentRepository documents;
     private final QuestionRepository questions;
+    private final PageCheckpointService checkpoints;
+    private final ExtractionCache cache;
+    private final PageStore pageStore;
+    private final PageClassifier classifier;
+    private final QuestionExtractor extractor;
+    private final ModelRateLimiter limiter;
+    private final ApplicationEventPublisher events;
+    private final ScheduledExecutorService modelScheduler;
+    private final int pageConcurrency;
+    private final int batchMaxPages;
+    private final int batchMaxTokens;
+    private final boolean boundedMemory;
+    private final boolean streaming;
     private final ObjectMapper om = new ObjectMapper();
-    private final OpenAIClient client = OpenAIOkHttpClient.fromEnv();
-
-    public DocumentProcessingService(DocumentRepository documents, QuestionRepository questions) {
+    private final QuestionJsonParser parser = new QuestionJsonParser(om.getFactory());
+
+    public DocumentProcessingService(DocumentRepository documents, QuestionRepository questions,
+                                     PageCheckpointService checkpoints, ExtractionCache cache,
+                                     PageStore pageStore,
+                                     PageClassifier classifier,
+                                     QuestionExtractor extractor,
+                                     ModelRateLimiter limiter,
+                                     ApplicationEventPublisher events,
+                                     @Qualifier("modelScheduler") ScheduledExecutorService modelScheduler,
+                                     @Value("${qbank.processing.page-concurrency:4}") int pageConcurrency,
+                                     @Value("${qbank.processing.batch.enabled:false}") boolean batchEnabled,
+                                     @Value("${qbank.processing.batch.max-pages:4}") int batchMaxPages,
+                                     @Value("${qbank.processing.batch.max-tokens:16000}") int batchMaxTokens,
+                                     @Value("${qbank.processing.memory.bounded:false}") boolean boundedMemory,
+                                     @Value("${qbank.processing.streaming:false}") boolean streaming) {
         this.documents = documents;
         this.questions = questions;
+        this.checkpoints = checkpoints;
+        this.cache = cache;
+        this.pageStore = pageStore;
+        this.classifier = classifier;
+        this.extractor = extractor;
+        this.limiter = limiter;
+        this.events = events;
+        this.modelScheduler = modelScheduler;
+        this.pageConcurrency = Math.max(1, pageConcurrency);
+        this.batchMaxPages = batchEnabled ? Math.max(1, batchMaxPages) : 1;
+        this.batchMaxTokens = batchMaxTokens;
+        this.boundedMemory = boundedMemory;
+        this.streaming = streaming;
     }
 
-    @Transactional(rollbackFor = Exception.class)
-    public void process(UUID docId) throws Exception {
+    /**
+     * Pages flow through four stages: text extraction -> rendering -> model extraction -> persistence.
+     * Pages that {@link PageClassifier} finds fully described by their text layer go to the model
+     * without the image. PDFBox is not thread-safe, so text and rendering stay on the calling thread. Model calls are
+     * asynchronous: at most {@code pageConcurrency} requests of this document are in flight, and the
+     * shared {@link ModelRateLimiter} admits requests across all documents without tying up a thread.
+     * Results are persisted strictly in page order.
+     *
+     * <p>With batching enabled, consecutive pages that miss the cache share one request, up to
+     * {@code batch.max-pages} pages or {@code batch.max-tokens} estimated tokens, whichever is hit
+     * first, so dense pages travel in smaller batches than sparse ones.
+     *
+     * <p>There is deliberately no transaction around the whole run: every page commits on its own
+     * through {@link PageCheckpointService}. Unless {@code full} is set, pages already DONE are
+     * skipped, so a reprocess resumes after the last finished page and retries only failed ones.
+     */
+    public void process(UUID docId, boolean full) throws Exception {
         Document doc = documents.findById(docId).orElseThrow();
 
         doc.setStatus(DocumentStatus.PROCESSING);
         doc.setLastError(null);
-        questions.deleteByDocumentId(docId);
         documents.save(doc);
+        events.publishEvent(ProcessingEvent.documentStarted(docId));
 
-        int totalSaved = 0;
+        if (full) {
+            checkpoints.reset(docId);
+        }
+        Set<Integer> donePages = checkpoints.donePages(docId);
+
+        int failedPages = 0;
+        Deque<PageTask> inFlight = new ArrayDeque<>();
+        List<PendingPage> batch = new ArrayList<>();
+        RunStats stats = new RunStats();
+        Cancellation cancellation = new Cancellation(docId);
+        Path scratch = null;
 
         try {
             Path pdfPath = Paths.get("storage").resolve(docId + ".pdf");
@@ -61,174 +134,578 @@ public class DocumentProcessingService {
                 throw new FileNotFoundException(pdfPath.toString());
             }
 
-            Path pagesDir = Paths.get("storage").resolve(docId.toString()).resolve("pages");
-            Files.createDirectories(pagesDir);
+            // where pages are rendered, and where a store without per-page files puts copies the model reads
+            scratch = Paths.get("storage").resolve(docId.toString()).resolve("work");
+
+            Semaphore permits = new Semaphore(pageConcurrency);
 
-            try (PDDocument pdf = Loader.loadPDF(pdfPath.toFile())) {
-                PDFRenderer renderer = new PDFRenderer(pdf);
-                int pageCount = pdf.getNumberOfPages();
+            try (PDDocument pdf = PageRasterizer.open(pdfPath, boundedMemory)) {
+                PageRasterizer rasterizer = new PageRasterizer(pdf, 150, boundedMemory);
+                // one pass over the text layer; it stops at the answer key, which is never extracted
+                List<PageTextStripper.PageText> texts = new PageTextStripper()
+                        .extract(pdf, DocumentProcessingService::looksLikeAnswerKeyStart);
+                int pageCount = texts.size();
 
                 for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
                     try {
-                        String pageText = extractText(pdf, pageIndex);
-                        if (looksLikeAnswerKeyStart(pageText)) break;
-
-                        Path pagePng = pagesDir.resolve(String.format("p%03d.png", pageIndex + 1));
-                        if (!Files.exists(pagePng)) {
-                            BufferedImage img = renderer.renderImageWithDPI(pageIndex, 150);
-                            ImageIO.write(img, "png", pagePng.toFile());
+                        if (donePages.contains(pageIndex)) continue;
+                        PageTextStripper.PageText pageText = texts.get(pageIndex);
+
+                        PageMode mode = classifier.classify(pdf.getPage(pageIndex), pageText).mode();
+                        checkpoints.markPending(docId, pageIndex, mode);
+                        events.publishEvent(ProcessingEvent.pageStarted(docId, pageIndex, mode));
+
+                        // rendered in both modes: the UI shows the page image next to its questions
+                        String pageName = String.format("p%03d.png", pageIndex + 1);
+                        Path pagePng = null;
+                        if (!pageStore.contains(docId, pageName)) {
+                            Path rendered = scratch.resolve(pageName);
+                            Files.createDirectories(scratch);
+                            rasterizer.render(pageIndex, rendered);
+                            pagePng = pageStore.put(docId, pageName, rendered);
+                        } else if (mode == PageMode.VISION) {
+                            pagePng = pageStore.file(docId, pageName, scratch.resolve(pageName));
                         }
 
-                        List<Question> extracted = extractWithRetry(docId, pageIndex, pageText, pagePng);
-
-                        if (extracted != null && !extracted.isEmpty()) {
-                            questions.saveAll(extracted);
-                            totalSaved += extracted.size();
+                        // text-mode pages carry no image at all
+                        Path image = mode == PageMode.VISION ? pagePng : null;
+                        PageInput input = new PageInput(docId, pageIndex, mode, pageText.text(), image);
+                        String cacheKey = cache.key(mode, image, pageText.text(), extractor.promptVersion(), extractor.modelName());
+
+                        List<Question> cached = fromCache(input, cacheKey);
+                        if (cached != null) {
+                            stats.cacheHits.incrementAndGet();
+                            inFlight.add(new PageTask(pageIndex, CompletableFuture.completedFuture(cached)));
+                        } else {
+                            int tokens = extractor.estimateTokens(input);
+                            int batchTokens = batch.stream().mapToInt(PendingPage::tokens).sum();
+                            if (!batch.isEmpty() && batchTokens + tokens > batchMaxTokens) {
+                                flush(batch, permits, stats, cancellation);
+                            }
+                            PendingPage pending = new PendingPage(input, cacheKey, tokens, new CompletableFuture<>());
+                            batch.add(pending);
+                            inFlight.add(new PageTask(pageIndex, pending.result()));
+                            if (batch.size() >= batchMaxPages) {
+                                flush(batch, permits, stats, cancellation);
+                            }
                         }
 
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw ie;
                     } catch (Exception pageErr) {
-                        // ✅ log and continue so one bad page doesn't fail the whole doc
-                        pageErr.printStackTrace();
+                        recordPageFailure(doc, pageIndex, pageErr);
+                        failedPages++;
+                    }
 
-                        // Optional: also append to doc.lastError but keep going
-                        doc.setLastError("Page " + (pageIndex + 1) + " failed: " + pageErr.getMessage());
-                        documents.save(doc);
+                    // persist whatever finished at the head of the queue, keeping page order
+                    while (!inFlight.isEmpty() && inFlight.peek().result().isDone()) {
+                        if (!persist(doc, inFlight.poll(), stats)) failedPages++;
                     }
                 }
+                flush(batch, permits, stats, cancellation);
+            }
+
+            while (!inFlight.isEmpty()) {
+                if (!persist(doc, inFlight.poll(), stats)) failedPages++;
             }
+            saveRunStats(docId, stats);
 
+            long totalSaved = questions.countByDocumentId(docId);
             if (totalSaved == 0) {
                 doc.setStatus(DocumentStatus.FAILED);
-                doc.setLastError("No questions extracted.");
+                doc.setLastError(failedPages > 0
+                        ? "No questions extracted; " + failedPages + " page(s) failed."
+                        : "No questions extracted.");
             } else {
                 doc.setStatus(DocumentStatus.DONE);
-                doc.setLastError(null);
+                doc.setLastError(failedPages > 0
+                        ? failedPages + " page(s) failed; process again to retry them."
+                        : null);
             }
             documents.save(doc);
+            events.publishEvent(ProcessingEvent.documentFinished(docId, doc.getStatus(), doc.getLastError(), totalSaved));
 
         } catch (Exception e) {
+            // stop this run's model traffic too, so it does not use up the budget other documents share
+            cancellation.cancel();
+            inFlight.forEach(t -> t.result().cancel(true));
             doc.setStatus(DocumentStatus.FAILED);
             doc.setLastError(e.getMessage());
             documents.save(doc);
+            events.publishEvent(ProcessingEvent.documentFinished(docId, DocumentStatus.FAILED, e.getMessage(),
+                    questions.countByDocumentId(docId)));
             throw e;
+        } finally {
+            deleteScratch(scratch);
         }
     }
 
-    private String extractText(PDDocument pdf, int pageIndex) throws IOException {
-        PDFTextStripper stripper = new PDFTextStripper();
-        stripper.setStartPage(pageIndex + 1);
-        stripper.setEndPage(pageIndex + 1);
-        return stripper.getText(pdf);
+    /** By now every model request has read its page; after a failed run, late readers fail harmlessly. */
+    private static void deleteScratch(Path scratch) {
+        if (scratch == null || !Files.isDirectory(scratch)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(scratch)) {
+            for (Path f : files) Files.deleteIfExists(f);
+            Files.deleteIfExists(scratch);
+        } catch (IOException ignore) {
+            // left for the next run of this document
+        }
     }
 
-    private boolean looksLikeAnswerKeyStart(String text) {
+    private record PageTask(int pageIndex, CompletableFuture<List<Question>> result) {}
+
+    /** A page waiting for the model; {@code result} completes once its request (or fallback) does. */
+    private record PendingPage(PageInput input, String cacheKey, int tokens, CompletableFuture<List<Question>> result) {}
+
+    /** Per-run counters, written to the document's logs to compare per-page and batched runs. */
+    private static final class RunStats {
+        final long startedNanos = System.nanoTime();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger pagesSent = new AtomicInteger();
+        final AtomicInteger cacheHits = new AtomicInteger();
+        final AtomicInteger batchFallbacks = new AtomicInteger();
+        final AtomicLong estimatedTokens = new AtomicLong();
+        // time spent committing pages, to watch the write path
+        final AtomicInteger questionsPersisted = new AtomicInteger();
+        final AtomicLong persistNanos = new AtomicLong();
+    }
+
+    /**
+     * Set when a run fails. Its requests still waiting in the limiter are dropped, retries and batch
+     * fallbacks are not started, and model calls in progress are cancelled.
+     */
+    private final class Cancellation {
+        private final UUID docId;
+        private final Set<CompletableFuture<?>> calls = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        Cancellation(UUID docId) {
+            this.docId = docId;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+            calls.add(call);
+            call.whenComplete((r, e) -> calls.remove(call));
+            if (cancelled) call.cancel(true);          // cancel() ran between the check and the call
+            return call;
+        }
+
+        void cancel() {
+            cancelled = true;
+            limiter.cancelWaiting(docId);
+            calls.forEach(c -> c.cancel(true));
+        }
+
+        <T> CompletableFuture<T> stopped() {
+            return CompletableFuture.failedFuture(new CancellationException("Processing of " + docId + " stopped"));
+        }
+    }
+
+    /**
+     * Sends the collected pages as one request: a single page goes through the per-page path, more
+     * go out as a batch. Blocks while this document already has {@code pageConcurrency} requests
+     * at the model.
+     */
+    private void flush(List<PendingPage> batch, Semaphore permits, RunStats stats,
+                       Cancellation cancellation) throws InterruptedException {
+        if (batch.isEmpty()) return;
+        List<PendingPage> pages = List.copyOf(batch);
+        batch.clear();
+
+        permits.acquire();
+        CompletableFuture.allOf(pages.stream().map(PendingPage::result).toArray(CompletableFuture[]::new))
+                .whenComplete((r, e) -> permits.release());
+
+        try {
+            if (pages.size() == 1) {
+                PendingPage p = pages.get(0);
+                stats.estimatedTokens.addAndGet(p.tokens());
+                forward(attempt(p.input(), p.cacheKey(), p.tokens(), 1, 0, 500, cancellation), p.result());
+            } else {
+                List<PageInput> inputs = pages.stream().map(PendingPage::input).toList();
+                int tokens = extractor.estimateTokens(inputs);
+                stats.estimatedTokens.addAndGet(tokens);
+                attemptBatch(pages, inputs, tokens, stats, cancellation);
+            }
+            stats.requests.incrementAndGet();
+            stats.pagesSent.addAndGet(pages.size());
+        } catch (RuntimeException e) {
+            pages.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * One request for several pages. Any failure (an unparsable answer, a page index outside the
+     * batch, a transport error) falls back to per-page requests with their usual retries, so a bad
+     * batch costs extra requests but never the pages. The fallback requests go out one at a time,
+     * since the batch took a single one of the document's {@code pageConcurrency} permits.
+     */
+    private void attemptBatch(List<PendingPage> pages, List<PageInput> inputs, int tokens, RunStats stats,
+                              Cancellation cancellation) {
+        UUID docId = inputs.get(0).documentId();
+        String name = String.format("batch_%03d-%03d", inputs.get(0).pageIndex() + 1,
+                inputs.get(inputs.size() - 1).pageIndex() + 1);
+        Set<Integer> expected = new HashSet<>();
+        inputs.forEach(p -> expected.add(p.pageIndex()));
+
+        CompletableFuture<ModelRateLimiter.Permit> admitted = cancellation.isCancelled()
+                ? cancellation.stopped()
+                : limiter.acquire(docId, tokens);
+        admitted
+                .thenCompose(permit -> {
+                    CompletableFuture<String> call;
+                    try {
+                        call = cancellation.isCancelled() ? cancellation.stopped()
+                                : cancellation.track(extractor.extractBatch(inputs));
+                    } catch (RuntimeException e) {
+                        call = CompletableFuture.failedFuture(e);
+                    }
+                    return call.whenComplete((r, e) -> permit.release());
+                })
+                .thenApply(json -> {
+                    saveRawResponse(docId, name + "_response.json", json);
+                    try {
+                        return splitBatch(docId, expected, json);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .whenComplete((byPage, err) -> {
+                    if (err == null) {
+                        for (PendingPage p : pages) {
+                            List<Question> extracted = byPage.getOrDefault(p.input().pageIndex(), List.of());
+                            cachePut(p.cacheKey(), extracted);
+                            p.result().complete(extracted);
+                        }
+                        return;
+                    }
+
+                    Throwable e = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                    if (cancellation.isCancelled()) {
+                        pages.forEach(p -> p.result().completeExceptionally(e));
+                        return;
+                    }
+                    saveFailureLog(docId, name, "pages: " + expected + "\n", e);
+                    if (e instanceof ModelRateLimitException rl) {
+                        limiter.onRateLimited(rl.getRetryAfter());
+                    }
+                    stats.batchFallbacks.incrementAndGet();
+                    stats.requests.addAndGet(pages.size());
+                    // one after another: the pages still hold only the batch's permit
+                    CompletableFuture<List<Question>> previous = CompletableFuture.completedFuture(null);
+                    for (PendingPage p : pages) {
+                        previous = previous.handle((r, x) -> null)
+                                .thenCompose(v -> attempt(p.input(), p.cacheKey(), p.tokens(), 1, 0, 500, cancellation));
+                        forward(previous, p.result());
+                    }
+                });
+    }
+
+    private static <T> void forward(CompletableFuture<T> from, CompletableFuture<T> to) {
+        from.whenComplete((r, e) -> {
+            if (e == null) to.complete(r);
+            else to.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        });
+    }
+
+    /** Commits one finished page in its own transaction. Returns false if the page failed. */
+    private boolean persist(Document doc, PageTask task, RunStats stats) throws InterruptedException {
+        try {
+            List<Question> extracted = task.result().get();
+            if (extracted == null) extracted = List.of();
+            long started = System.nanoTime();
+            checkpoints.commitPage(doc.getId(), task.pageIndex(), extracted);
+            stats.persistNanos.addAndGet(System.nanoTime() - started);
+            stats.questionsPersisted.addAndGet(extracted.size());
+            events.publishEvent(ProcessingEvent.pageDone(doc.getId(), task.pageIndex(), extracted.size()));
+            return true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            recordPageFailure(doc, task.pageIndex(), cause instanceof Exception ex ? ex : new Exception(cause));
+        } catch (RuntimeException e) {
+            recordPageFailure(doc, task.pageIndex(), e);
+        }
+        return false;
+    }
+
+    private void recordPageFailure(Document doc, int pageIndex, Exception pageErr) {
+        // ✅ log and continue so one bad page doesn't fail the whole doc
+        pageErr.printStackTrace();
+
+        checkpoints.markFailed(doc.getId(), pageIndex, pageErr.getMessage());
+        events.publishEvent(ProcessingEvent.pageFailed(doc.getId(), pageIndex, pageErr.getMessage()));
+
+        // Optional: also append to doc.lastError but keep going
+        doc.setLastError("Page " + (pageIndex + 1) + " failed: " + pageErr.getMessage());
+        documents.save(doc);
+    }
+
+    // "解析版" and "参考答案" are covered by "解析" and "答案"
+    private static final String[] ANSWER_KEY_MARKERS = {"答案", "解析", "Solutions", "Answer"};
+
+    /**
+     * True if any marker occurs in {@code text} once whitespace is ignored (so "答 案" matches).
+     * Scans in place instead of stripping whitespace into a copy of the page first.
+     */
+    static boolean looksLikeAnswerKeyStart(CharSequence text) {
         if (text == null) return false;
-        String t = text.replaceAll("\\s+", "");
-        return t.contains("解析版") || t.contains("参考答案") || t.contains("答案") || t.contains("解析") || t.contains("Solutions") || t.contains("Answer");
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            if (isRegexSpace(text.charAt(i))) continue;
+            for (String marker : ANSWER_KEY_MARKERS) {
+                if (matchesAt(text, i, marker)) return true;
+            }
+        }
+        return false;
     }
 
-    private List<Question> extractQuestionsWithOpenAI(UUID docId, int pageIndex, String pageText, Path pagePng) throws Exception {
-        // Base64 image
-        byte[] bytes = Files.readAllBytes(pagePng);
-        String b64 = Base64.getEncoder().encodeToString(bytes);
-
-        String instruction =
-                "You are extracting math exam questions from ONE PAGE.\n" +
-                        "Return ONLY JSON with this schema:\n" +
-                        "{ \"questions\": [\n" +
-                        "  {\n" +
-                        "    \"numberLabel\": \"string\",\n" +
-                        "    \"stem\": \"string\",\n" +
-                        "    \"choices\": {\"A\":\"...\",\"B\":\"...\",\"C\":\"...\",\"D\":\"...\"} | null,\n" +
-                        "    \"category\": \"Algebra|Trigonometry|Geometry|Vectors|Probability|Calculus|Sequences|Functions|Set Theory|Other\",\n" +
-                        "    \"confidence\": 0.0,\n" +
-                        "    \"needsReview\": true|false,\n" +
-                        "    \"reviewReason\": \"string or null\"\n" +
-                        "    \"hasFigure\": true|false,\n" +
-                        "  }\n" +
-                        "] }\n" +
-                        "Rules:\n" +
-                        "- If the page is blurry / unreadable, set needsReview=true and lower confidence.\n" +
-                        "- Ignore solution/explanations if present.\n" +
-                        "- Keep math expressions readable in plain text (use standard symbols).\n";
-
-        // Responses API with text + image (vision) :contentReference[oaicite:6]{index=6}
-        List<ResponseInputItem> items = List.of(
-                ResponseInputItem.ofMessage(
-                        ResponseInputItem.Message.builder()
-                                .role(ResponseInputItem.Message.Role.USER)
-                                .addContent(ResponseInputText.builder()
-                                        .text(instruction + "\n\nExtracted text (may be empty):\n" + pageText)
-                                        .build())
-                                .addContent(ResponseInputImage.builder()
-                                        .imageUrl("data:image/png;base64," + b64)
-                                        .detail(ResponseInputImage.Detail.AUTO)
-                                        .build())
-                                .build()
-                )
-        );
-
-        ResponseCreateParams params = ResponseCreateParams.builder()
-                .model("gpt-5.2")
-                .inputOfResponse(items)   // ✅ convenience alias
-                .build();
-
-        Response resp = client.responses().create(params);
-
-        String json = extractOutputTextJsonSafe(resp);
-
-        saveRawResponse(docId, pageIndex, json);
-
-        JsonNode root = om.readTree(json);
-        JsonNode arr = root.get("questions");
-        if (arr == null || !arr.isArray()) return List.of();
+    private static boolean matchesAt(CharSequence text, int from, String marker) {
+        int i = from;
+        for (int m = 0; m < marker.length(); m++) {
+            while (i < text.length() && isRegexSpace(text.charAt(i))) i++;
+            if (i == text.length() || text.charAt(i) != marker.charAt(m)) return false;
+            i++;
+        }
+        return true;
+    }
 
-        List<Question> out = new ArrayList<>();
-        for (JsonNode q : arr) {
-            Question entity = new Question();
-            entity.setDocumentId(docId);
-            entity.setPageIndex(pageIndex);
-            entity.setNumberLabel(q.path("numberLabel").asText(""));
-            entity.setStem(q.path("stem").asText(""));
-            entity.setCategory(q.path("category").asText("Other"));
-            entity.setConfidence(q.path("confidence").asDouble(0.0));
-            entity.setNeedsReview(q.path("needsReview").asBoolean(false));
-            entity.setReviewReason(q.path("reviewReason").isNull() ? null : q.path("reviewReason").asText(null));
-            entity.setHasFigure(q.path("hasFigure").asBoolean(false));
-            entity.setPageImageFile(String.format("p%03d.png", pageIndex + 1));
-
-            JsonNode choices = q.get("choices");
-            entity.setChoicesJson(choices == null || choices.isNull() ? null : choices.toString());
-
-            out.add(entity);
+    /** Same set as regex {@code \s}. */
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /** Runs when the extractor answers: keep the raw text for debugging, then parse and cache it. */
+    private List<Question> onModelAnswer(PageInput page, String cacheKey, String json) {
+        saveRawResponse(page.documentId(), String.format("page_%03d_response.json", page.pageIndex() + 1), json);
+        try {
+            List<Question> extracted = parseQuestions(page.documentId(), page.pageIndex(), json);
+            cachePut(cacheKey, extracted);
+            return extracted;
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
-        return out;
     }
 
-    private List<Question> extractWithRetry(UUID docId, int pageIndex, String pageText, Path pagePng) throws Exception {
-        int maxAttempts = 3;
-        long backoffMs = 500;
+    /** Like {@link #onModelAnswer}, for an answer whose questions were already read while it streamed in. */
+    private List<Question> onStreamedAnswer(PageInput page, String cacheKey, String json, StreamedAnswer streamed) {
+        List<Question> extracted = streamed.finish();
+        if (extracted == null) {
+            // the stream could not be parsed as it came; parse the whole answer for the real error
+            return onModelAnswer(page, cacheKey, json);
+        }
+        saveRawResponse(page.documentId(), String.format("page_%03d_response.json", page.pageIndex() + 1), json);
+        cachePut(cacheKey, extracted);
+        return extracted;
+    }
+
+    /**
+     * Questions of one streamed attempt, read as the answer arrives; each is announced with a
+     * {@link ProcessingEvent#questionExtracted} event. Rows are still written when the page
+     * commits, so a retried or failed attempt never leaves partial rows behind.
+     */
+    private final class StreamedAnswer {
+        private final List<Question> questions = new ArrayList<>();
+        private QuestionJsonParser.Incremental feed;
 
-        Exception last = null;
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+        StreamedAnswer(PageInput page, int attempt) {
             try {
-                return extractQuestionsWithOpenAI(docId, pageIndex, pageText, pagePng);
-            } catch (Exception e) {
-                last = e;
+                feed = parser.incremental((idx, q) -> {
+                    questions.add(place(q, page.documentId(), page.pageIndex()));
+                    events.publishEvent(ProcessingEvent.questionExtracted(page.documentId(), page.pageIndex(),
+                            attempt, q.getNumberLabel(), q.getCategory(), q.getStem()));
+                });
+            } catch (IOException e) {
+                feed = null;
+            }
+        }
 
-                // save debug info for this failure (super important)
-                saveFailureLog(docId, pageIndex, attempt, e);
+        void feed(String text) {
+            if (feed == null) return;
+            try {
+                feed.feed(text);
+            } catch (IOException e) {
+                feed = null;
+            }
+        }
 
-                if (attempt < maxAttempts) {
-                    Thread.sleep(backoffMs);
-                    backoffMs *= 2;
-                }
+        /** The parsed questions, or null if the answer was not valid JSON. */
+        List<Question> finish() {
+            if (feed == null) return null;
+            try {
+                feed.finish();
+                return questions;
+            } catch (IOException e) {
+                return null;
             }
         }
-        throw last;
     }
 
-    private void saveFailureLog(UUID docId, int pageIndex, int attempt, Exception e) {
+    private void cachePut(String cacheKey, List<Question> extracted) {
+        try {
+            cache.put(cacheKey, toCacheJson(extracted));
+        } catch (IOException ignore) {
+            // the cache is an optimization; the page itself is fine
+        }
+    }
+
+    /** Splits a batched answer by each question's {@code pageIndex}; pages without questions map to nothing. */
+    private Map<Integer, List<Question>> splitBatch(UUID docId, Set<Integer> expected, String json) throws IOException {
+        Map<Integer, List<Question>> out = new HashMap<>();
+        boolean found = parser.parse(json, (idx, q) -> {
+            if (idx == null || !expected.contains(idx)) {
+                throw new IOException("Batch answer refers to page " + idx + " outside the batch " + expected);
+            }
+            out.computeIfAbsent(idx, k -> new ArrayList<>()).add(place(q, docId, idx));
+        });
+        if (!found) {
+            throw new IOException("Batch answer has no questions array");
+        }
+        return out;
+    }
+
+    private List<Question> parseQuestions(UUID docId, int pageIndex, String json) throws IOException {
+        List<Question> out = new ArrayList<>();
+        parser.parse(json, (idx, q) -> out.add(place(q, docId, pageIndex)));
+        return out;
+    }
+
+    private static Question place(Question q, UUID docId, int pageIndex) {
+        q.setDocumentId(docId);
+        q.setPageIndex(pageIndex);
+        q.setPageImageFile(String.format("p%03d.png", pageIndex + 1));
+        return q;
+    }
+
+    /** Normalized form of a page's question list, as stored in the extraction cache. */
+    private String toCacheJson(List<Question> extracted) throws IOException {
+        ObjectNode root = om.createObjectNode();
+        ArrayNode arr = root.putArray("questions");
+        for (Question q : extracted) {
+            ObjectNode n = arr.addObject();
+            n.put("numberLabel", q.getNumberLabel());
+            n.put("stem", q.getStem());
+            n.set("choices", q.getChoicesJson() == null ? NullNode.getInstance() : om.readTree(q.getChoicesJson()));
+            n.put("category", q.getCategory());
+            n.put("confidence", q.getConfidence());
+            n.put("needsReview", q.isNeedsReview());
+            n.put("reviewReason", q.getReviewReason());
+            n.put("hasFigure", q.isHasFigure());
+        }
+        return om.writeValueAsString(root);
+    }
+
+    /** The page's questions from the extraction cache, or null on a miss. Corrupt entries are dropped. */
+    private List<Question> fromCache(PageInput page, String cacheKey) {
+        Optional<String> cached = cache.get(cacheKey);
+        if (cached.isEmpty()) return null;
+        try {
+            return parseQuestions(page.documentId(), page.pageIndex(), cached.get());
+        } catch (IOException corrupt) {
+            cache.invalidate(cacheKey);
+            return null;
+        }
+    }
+
+    /**
+     * One model attempt for a single page, admitted by the global rate limiter without blocking;
+     * the backoff between attempts is scheduled, not slept. Ordinary failures count towards {@code MAX_FAILURES}; 429s only pause the
+     * limiter and are retried after the provider's {@code Retry-After}, up to {@code MAX_ATTEMPTS}
+     * attempts in total. Backoff doubles per attempt and is jittered so retries do not align.
+     * Once the run is cancelled no further attempt is queued, sent or retried.
+     */
+    private CompletableFuture<List<Question>> attempt(PageInput page, String cacheKey, int tokens,
+                                                      int attempt, int failures, long backoffMs,
+                                                      Cancellation cancellation) {
+        final int MAX_FAILURES = 3;
+        final int MAX_ATTEMPTS = 8;
+
+        if (cancellation.isCancelled()) return cancellation.stopped();
+        StreamedAnswer streamed = streaming ? new StreamedAnswer(page, attempt) : null;
+        return limiter.acquire(page.documentId(), tokens)
+                .thenCompose(permit -> {
+                    CompletableFuture<String> call;
+                    try {
+                        if (cancellation.isCancelled()) {
+                            call = cancellation.stopped();
+                        } else {
+                            call = cancellation.track(streamed == null
+                                    ? extractor.extract(page)
+                                    : extractor.extractStreaming(page, streamed::feed));
+                        }
+                    } catch (RuntimeException e) {
+                        call = CompletableFuture.failedFuture(e);
+                    }
+                    return call.whenComplete((r, e) -> permit.release());
+                })
+                .thenApply(json -> streamed == null
+                        ? onModelAnswer(page, cacheKey, json)
+                        : onStreamedAnswer(page, cacheKey, json, streamed))
+                .exceptionallyCompose(err -> {
+                    Throwable e = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                    if (cancellation.isCancelled()) return CompletableFuture.failedFuture(e);
+
+                    // save debug info for this failure (super important)
+                    saveFailureLog(page.documentId(), page.pageIndex(), attempt, e);
+
+                    long delayMs = backoffMs;
+                    int failed = failures;
+                    if (e instanceof ModelRateLimitException rl) {
+                        limiter.onRateLimited(rl.getRetryAfter());
+                        delayMs = Math.max(delayMs, rl.getRetryAfter().toMillis());
+                    } else {
+                        failed++;
+                    }
+                    if (failed >= MAX_FAILURES || attempt >= MAX_ATTEMPTS) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+
+                    // equal jitter: half the delay is fixed, the other half random
+                    long jittered = delayMs / 2 + ThreadLocalRandom.current().nextLong(delayMs / 2 + 1);
+                    long nextBackoff = Math.min(backoffMs * 2, 30_000);
+                    Executor later = CompletableFuture.delayedExecutor(jittered, TimeUnit.MILLISECONDS, modelScheduler);
+                    int failedSoFar = failed;
+                    return CompletableFuture.runAsync(() -> {}, later)
+                            .thenCompose(v -> attempt(page, cacheKey, tokens, attempt + 1, failedSoFar, nextBackoff, cancellation));
+                });
+    }
+
+    private void saveFailureLog(UUID docId, int pageIndex, int attempt, Throwable e) {
+        saveFailureLog(docId, String.format("page_%03d_attempt_%d", pageIndex + 1, attempt),
+                "pageIndex: " + pageIndex + " (page " + (pageIndex + 1) + ")\n"
+                        + "attempt: " + attempt + "\n",
+                e);
+    }
+
+    private void saveFailureLog(UUID docId, String name, String details, Throwable e) {
+        String msg = "docId: " + docId + "\n"
+                + details
+                + "exception: " + e.getClass().getName() + "\n"
+                + "message: " + (e.getMessage() == null ? "" : e.getMessage()) + "\n";
+        saveLog(docId, name, msg);
+    }
+
+    private void saveRunStats(UUID docId, RunStats stats) {
+        long elapsedMs = (System.nanoTime() - stats.startedNanos) / 1_000_000;
+        long persistMs = stats.persistNanos.get() / 1_000_000;
+        String msg = "docId: " + docId + "\n"
+                + "batchMaxPages: " + batchMaxPages + "\n"
+                + "pagesSent: " + stats.pagesSent.get() + "\n"
+                + "cacheHits: " + stats.cacheHits.get() + "\n"
+                + "requests: " + stats.requests.get() + "\n"
+                + "batchFallbacks: " + stats.batchFallbacks.get() + "\n"
+                + "estimatedTokens: " + stats.estimatedTokens.get() + "\n"
+                + "questionsPersisted: " + stats.questionsPersisted.get() + "\n"
+                + "persistMs: " + persistMs + "\n"
+                + "questionsPerSecond: " + (persistMs == 0 ? "-" : stats.questionsPersisted.get() * 1000L / persistMs) + "\n"
+                + "elapsedMs: " + elapsedMs + "\n";
+        saveLog(docId, "run", msg);
+    }
+
+    private void saveLog(UUID docId, String name, String msg) {
         try {
             Path dir = Paths.get("storage")
                     .resolve(docId.toString())
@@ -236,13 +713,7 @@ public class DocumentProcessingService {
             Files.createDirectories(dir);
 
             String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            Path out = dir.resolve(String.format("page_%03d_attempt_%d_%s.txt", pageIndex + 1, attempt, ts));
-
-            String msg = "docId: " + docId + "\n"
-                    + "pageIndex: " + pageIndex + " (page " + (pageIndex + 1) + ")\n"
-                    + "attempt: " + attempt + "\n"
-                    + "exception: " + e.getClass().getName() + "\n"
-                    + "message: " + (e.getMessage() == null ? "" : e.getMessage()) + "\n";
+            Path out = dir.resolve(name + "_" + ts + ".txt");
 
             Files.writeString(out, msg, StandardCharsets.UTF_8);
 
@@ -253,44 +724,19 @@ public class DocumentProcessingService {
 
     /**
      * Optional: save the raw model response so you can debug JSON issues.
-     * Call this inside extractQuestionsWithOpenAI right after you receive the response string.
+     * Called by onModelAnswer, onStreamedAnswer and attemptBatch as soon as the model answers.
      */
-    private void saveRawResponse(UUID docId, int pageIndex, String raw) {
+    private void saveRawResponse(UUID docId, String fileName, String raw) {
         try {
             Path dir = Paths.get("storage")
                     .resolve(docId.toString())
                     .resolve("raw");
             Files.createDirectories(dir);
 
-            Path out = dir.resolve(String.format("page_%03d_response.json", pageIndex + 1));
+            Path out = dir.resolve(fileName);
             Files.writeString(out, raw == null ? "" : raw, StandardCharsets.UTF_8);
 
         } catch (Exception ignore) {
         }
     }
-
-    public static String extractOutputTextJsonSafe(Object responseObj) {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.valueToTree(responseObj);
-
-        StringBuilder sb = new StringBuilder();
-
-        JsonNode output = root.get("output");
-        if (output != null && output.isArray()) {
-            for (JsonNode item : output) {
-
-                // Messages usually look like: { "type":"message", "content":[ ... ] }
-                JsonNode content = item.get("content");
-                if (content != null && content.isArray()) {
-                    for (JsonNode c : content) {
-                        if ("output_text".equals(c.path("type").asText())) {
-                            sb.append(c.path("text").asText(""));
-                        }
-                    }
-                }
-            }
-        }
-
-        return sb.toString();
-    }
 }
@@ -0,0 +1,81 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.PageMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Content-addressed cache of model extraction results. The key covers everything that
+ * determines the model's answer (page mode, page image, page text, prompt version, model name), so a
+ * reprocess with unchanged inputs never goes to the network.
+ */
+@Component
+public class ExtractionCache {
+
+    private final boolean enabled;
+    private final DiskLruCache store;
+
+    public ExtractionCache(@Value("${qbank.cache.extraction.enabled:true}") boolean enabled,
+                           @Value("${qbank.cache.extraction.max-size-mb:256}") long maxSizeMb) {
+        this.enabled = enabled;
+        this.store = new DiskLruCache(Paths.get("storage").resolve("cache").resolve("extraction"),
+                maxSizeMb * 1024 * 1024, ".json");
+    }
+
+    /** {@code image} is hashed straight from disk; {@code null} for text-mode pages. */
+    public String key(PageMode mode, Path image, String text, String promptVersion, String model) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            // length-prefix every part so two different inputs can never concatenate to the same bytes
+            update(md, promptVersion.getBytes(StandardCharsets.UTF_8));
+            update(md, model.getBytes(StandardCharsets.UTF_8));
+            update(md, mode.name().getBytes(StandardCharsets.UTF_8));
+            update(md, (text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+            if (image == null) {
+                update(md, new byte[0]);
+            } else {
+                md.update(ByteBuffer.allocate(Integer.BYTES).putInt((int) Files.size(image)).array());
+                try (InputStream in = new DigestInputStream(Files.newInputStream(image), md)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) return Optional.empty();
+        return store.get(key).map(b -> new String(b, StandardCharsets.UTF_8));
+    }
+
+    public void put(String key, String questionsJson) {
+        if (!enabled) return;
+        store.put(key, questionsJson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Called when an entry turns out to be unreadable, so it is not hit again. */
+    public void invalidate(String key) {
+        store.remove(key);
+    }
+
+    private static void update(MessageDigest md, byte[] part) {
+        md.update(ByteBuffer.allocate(Integer.BYTES).putInt(part.length).array());
+        md.update(part);
+    }
+}
@@ -0,0 +1,447 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.Document;
+import com.sytion06.backend.model.DocumentStatus;
+import com.sytion06.backend.model.IngestPending;
+import com.sytion06.backend.repo.DocumentRepository;
+import com.sytion06.backend.repo.IngestPendingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Bulk intake of many PDFs at once, from a ZIP stream or a directory on the server. Files are
+ * streamed one at a time into storage (the archive is never held in memory or on disk as a
+ * whole), their document rows are inserted in batches, and new documents are handed to the
+ * processing queue by a feeder that only submits while the queue has room. {@code queue-reserve}
+ * slots are left free so interactive uploads are not locked out by an archive of hundreds of
+ * papers. Progress of recent ingests is kept in memory. Documents still waiting for the feeder
+ * are also kept as {@link IngestPending} rows; after a restart their ingests come back with just
+ * those documents, and feeding resumes.
+ */
+@Service
+public class IngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestService.class);
+    private static final int MAX_ERRORS = 20;
+
+    /** One bulk ingest; counters are updated while it reads and while the feeder submits. */
+    public static final class Ingest {
+        final UUID id;
+        final String source;
+        final boolean process;
+        final Instant startedAt;
+        final long startedNanos = System.nanoTime();
+        volatile long readNanos;                  // time spent reading, 0 while still reading
+        volatile long firstSubmitNanos;
+        volatile String readError;
+
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger stored = new AtomicInteger();
+        final AtomicInteger deduplicated = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger submitted = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final List<UUID> documentIds = Collections.synchronizedList(new ArrayList<>());
+        final Queue<UUID> pending = new ConcurrentLinkedQueue<>();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Ingest(UUID id, String source, boolean process, Instant startedAt) {
+            this.id = id;
+            this.source = source;
+            this.process = process;
+            this.startedAt = startedAt;
+        }
+
+        public UUID getId() { return id; }
+
+        boolean reading() { return readNanos == 0; }
+
+        void error(String message) {
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) errors.add(message);
+            }
+        }
+    }
+
+    private final DocumentIntakeService intake;
+    private final DocumentRepository documents;
+    private final IngestPendingRepository pendingRows;
+    private final ProcessingJobService jobs;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService reader;
+    private final Path directoryRoot;
+    private final int batchSize;
+    private final long maxFileBytes;
+    private final int queueReserve;
+    private final int retained;
+
+    // insertion order = start order; the feeder serves ingests round-robin in this order
+    private final Map<UUID, Ingest> ingests = new LinkedHashMap<>();
+
+    public IngestService(DocumentIntakeService intake, DocumentRepository documents,
+                         IngestPendingRepository pendingRows, ProcessingJobService jobs,
+                         @Qualifier("ingestScheduler") ScheduledExecutorService scheduler,
+                         @Qualifier("ingestReader") ExecutorService reader,
+                         @Value("${qbank.ingest.directory-root:import}") String directoryRoot,
+                         @Value("${qbank.ingest.batch-size:50}") int batchSize,
+                         @Value("${qbank.ingest.max-file-mb:200}") int maxFileMb,
+                         @Value("${qbank.ingest.queue-reserve:5}") int queueReserve,
+                         @Value("${qbank.ingest.retained:50}") int retained) {
+        this.intake = intake;
+        this.documents = documents;
+        this.pendingRows = pendingRows;
+        this.jobs = jobs;
+        this.scheduler = scheduler;
+        this.reader = reader;
+        this.directoryRoot = Paths.get(directoryRoot).toAbsolutePath().normalize();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFileBytes = Math.max(1, maxFileMb) * 1024L * 1024L;
+        this.queueReserve = Math.max(0, queueReserve);
+        this.retained = Math.max(1, retained);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startFeeder() {
+        restorePending();
+        scheduler.scheduleWithFixedDelay(this::feed, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Brings back the ingests that still had documents waiting when the application stopped. Only
+     * those documents are known again; the read counters of the ingest are lost. Documents that
+     * are gone or no longer UPLOADED (submitted just before the stop) are dropped.
+     */
+    private void restorePending() {
+        List<IngestPending> rows = pendingRows.findAllByOrderByStartedAtAscDocumentIdAsc();
+        if (rows.isEmpty()) return;
+        Set<UUID> waiting = new HashSet<>();
+        for (Document d : documents.findAllById(rows.stream().map(IngestPending::getDocumentId).toList())) {
+            if (d.getStatus() == DocumentStatus.UPLOADED) waiting.add(d.getId());
+        }
+
+        List<UUID> stale = new ArrayList<>();
+        synchronized (ingests) {
+            for (IngestPending row : rows) {
+                if (!waiting.contains(row.getDocumentId())) {
+                    stale.add(row.getDocumentId());
+                    continue;
+                }
+                Ingest ingest = ingests.computeIfAbsent(row.getIngestId(),
+                        id -> new Ingest(id, row.getSource(), true, row.getStartedAt()));
+                ingest.readNanos = 1;
+                ingest.documentIds.add(row.getDocumentId());
+                ingest.pending.add(row.getDocumentId());
+            }
+        }
+        pendingRows.deleteAllById(stale);
+        log.info("Resuming {} ingested documents that were waiting to be processed", rows.size() - stale.size());
+    }
+
+    /**
+     * Reads every {@code .pdf} entry of a ZIP stream into storage. Returns once the stream is
+     * consumed; processing continues in the background. A corrupt archive stops reading, but the
+     * entries read before it are kept.
+     */
+    public Ingest ingestZip(InputStream body, String name, boolean process) {
+        Ingest ingest = register("zip:" + name, process);
+        List<DocumentIntakeService.StagedFile> batch = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(body)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                ingest.files.incrementAndGet();
+                if (!isPdfName(entry.getName())) {
+                    ingest.skipped.incrementAndGet();
+                    continue;
+                }
+                stage(ingest, batch, entry.getName(), zip);
+            }
+            if (ingest.files.get() == 0) ingest.readError = "Not a ZIP archive, or an empty one";
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ingest {} stopped reading {}", ingest.id, ingest.source, e);
+            ingest.readError = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        } finally {
+            commit(ingest, batch);
+            ingest.readNanos = Math.max(1, System.nanoTime() - ingest.startedNanos);
+        }
+        return ingest;
+    }
+
+    /**
+     * Reads every {@code .pdf} file below {@code path}, which is resolved against
+     * {@code qbank.ingest.directory-root} and must stay inside it, also once symbolic links on the
+     * way are resolved. Links below it are not followed.
+     * Returns as soon as the path is checked; the walk runs on the ingest reader thread, and
+     * directory ingests queue behind each other there (status READING until they finish).
+     *
+     * @throws IllegalArgumentException if the path is outside the root or not a directory
+     */
+    public Ingest ingestDirectory(String path, boolean process) {
+        Path dir = directoryRoot.resolve(path).normalize();
+        if (!dir.startsWith(directoryRoot)) {
+            throw new IllegalArgumentException("Path must be inside " + directoryRoot);
+        }
+        // a link anywhere on the way, not just at the end, could lead out of the root
+        Path real;
+        try {
+            real = dir.toRealPath();
+            if (!real.startsWith(directoryRoot.toRealPath())) {
+                throw new IllegalArgumentException("Path must be inside " + directoryRoot);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a directory: " + path);
+        }
+        if (!Files.isDirectory(real, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IllegalArgumentException("Not a directory: " + path);
+        }
+
+        Ingest ingest = register("dir:" + directoryRoot.relativize(dir), process);
+        try {
+            reader.execute(() -> readDirectory(ingest, real));
+        } catch (RejectedExecutionException e) {
+            ingest.readError = "Server is shutting down";
+            ingest.readNanos = Math.max(1, System.nanoTime() - ingest.startedNanos);
+        }
+        return ingest;
+    }
+
+    private void readDirectory(Ingest ingest, Path dir) {
+        List<DocumentIntakeService.StagedFile> batch = new ArrayList<>();
+        try {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(dir)) {
+                files = walk.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)).sorted().toList();
+            }
+            for (Path file : files) {
+                ingest.files.incrementAndGet();
+                String name = dir.relativize(file).toString().replace('\\', '/');
+                if (!isPdfName(name)) {
+                    ingest.skipped.incrementAndGet();
+                    continue;
+                }
+                try (InputStream in = Files.newInputStream(file)) {
+                    stage(ingest, batch, name, in);
+                } catch (IOException e) {
+                    ingest.failed.incrementAndGet();
+                    ingest.error(name + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ingest {} stopped reading {}", ingest.id, ingest.source, e);
+            ingest.readError = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        } finally {
+            commit(ingest, batch);
+            ingest.readNanos = Math.max(1, System.nanoTime() - ingest.startedNanos);
+        }
+    }
+
+    public Optional<Ingest> find(UUID id) {
+        synchronized (ingests) {
+            return Optional.ofNullable(ingests.get(id));
+        }
+    }
+
+    public List<Ingest> recent() {
+        synchronized (ingests) {
+            List<Ingest> out = new ArrayList<>(ingests.values());
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    /** Aggregate progress: files read, documents created, and where those documents are in processing. */
+    public Map<String, Object> progress(Ingest ingest) {
+        long now = System.nanoTime();
+        long readNanos = ingest.reading() ? now - ingest.startedNanos : ingest.readNanos;
+        double readSeconds = Math.max(readNanos, 1) / 1e9;
+
+        Map<DocumentStatus, Integer> byStatus = new EnumMap<>(DocumentStatus.class);
+        List<UUID> ids;
+        synchronized (ingest.documentIds) {
+            ids = List.copyOf(ingest.documentIds);
+        }
+        for (Document d : documents.findAllById(ids)) {
+            byStatus.merge(d.getStatus(), 1, Integer::sum);
+        }
+        int done = byStatus.getOrDefault(DocumentStatus.DONE, 0);
+        int failedDocs = byStatus.getOrDefault(DocumentStatus.FAILED, 0);
+        boolean settled = !ingest.reading() && ingest.pending.isEmpty()
+                && byStatus.keySet().stream().allMatch(s -> s == DocumentStatus.DONE || s == DocumentStatus.FAILED
+                || (!ingest.process && s == DocumentStatus.UPLOADED));
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ingestId", ingest.id.toString());
+        out.put("source", ingest.source);
+        out.put("status", ingest.reading() ? "READING" : !ingest.pending.isEmpty() ? "FEEDING" : settled ? "DONE" : "PROCESSING");
+        out.put("startedAt", ingest.startedAt.toString());
+        out.put("readError", ingest.readError);
+
+        Map<String, Object> read = new LinkedHashMap<>();
+        read.put("files", ingest.files.get());
+        read.put("stored", ingest.stored.get());
+        read.put("deduplicated", ingest.deduplicated.get());
+        read.put("skipped", ingest.skipped.get());
+        read.put("failed", ingest.failed.get());
+        read.put("bytes", ingest.bytes.get());
+        read.put("seconds", Math.round(readSeconds * 10) / 10.0);
+        read.put("filesPerSecond", Math.round(ingest.files.get() / readSeconds * 10) / 10.0);
+        read.put("mbPerSecond", Math.round(ingest.bytes.get() / readSeconds / (1024 * 1024) * 10) / 10.0);
+        out.put("read", read);
+
+        Map<String, Object> processing = new LinkedHashMap<>();
+        processing.put("waiting", ingest.pending.size());
+        processing.put("submitted", ingest.submitted.get());
+        for (DocumentStatus s : DocumentStatus.values()) {
+            processing.put(s.name().toLowerCase(), byStatus.getOrDefault(s, 0));
+        }
+        long firstSubmit = ingest.firstSubmitNanos;
+        double minutes = firstSubmit == 0 ? 0 : (now - firstSubmit) / 60e9;
+        // counts deduplicated documents too; they finish without processing
+        processing.put("documentsPerMinute", minutes <= 0 ? null : Math.round((done + failedDocs) / minutes * 10) / 10.0);
+        out.put("processing", processing);
+
+        synchronized (ingest.errors) {
+            out.put("errors", List.copyOf(ingest.errors));
+        }
+        return out;
+    }
+
+    private Ingest register(String source, boolean process) {
+        Ingest ingest = new Ingest(UUID.randomUUID(), source, process, Instant.now());
+        synchronized (ingests) {
+            ingests.put(ingest.id, ingest);
+            // forget the oldest finished ingests; active ones are kept regardless
+            Iterator<Ingest> it = ingests.values().iterator();
+            while (ingests.size() > retained && it.hasNext()) {
+                Ingest old = it.next();
+                if (old != ingest && !old.reading() && old.pending.isEmpty()) it.remove();
+            }
+        }
+        return ingest;
+    }
+
+    private void stage(Ingest ingest, List<DocumentIntakeService.StagedFile> batch, String name, InputStream in) {
+        try {
+            DocumentIntakeService.StagedFile staged = intake.stage(
+                    new PdfUploadStream(new EntryStream(in), 0, maxFileBytes, true), name);
+            ingest.bytes.addAndGet(staged.size());
+            batch.add(staged);
+        } catch (IOException e) {
+            ingest.failed.incrementAndGet();
+            ingest.error(name + ": " + e.getMessage());
+        }
+        if (batch.size() >= batchSize) commit(ingest, batch);
+    }
+
+    private void commit(Ingest ingest, List<DocumentIntakeService.StagedFile> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            List<IngestPending> waiting = new ArrayList<>();
+            for (DocumentIntakeService.IntakeResult r : intake.commit(batch)) {
+                UUID docId = r.document().getId();
+                ingest.documentIds.add(docId);
+                if (r.deduplicated()) {
+                    ingest.deduplicated.incrementAndGet();
+                } else {
+                    ingest.stored.incrementAndGet();
+                    if (ingest.process) waiting.add(new IngestPending(docId, ingest.id, ingest.source, ingest.startedAt));
+                }
+            }
+            // the rows first: the feeder deletes a document's row once it has submitted it
+            pendingRows.saveAll(waiting);
+            waiting.forEach(w -> ingest.pending.add(w.getDocumentId()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ingest {} could not store a batch of {} files", ingest.id, batch.size(), e);
+            ingest.failed.addAndGet(batch.size());
+            ingest.error("batch of " + batch.size() + " files: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Submits waiting documents while the job queue has more than {@code queue-reserve} free
+     * slots, one document per ingest in turn. Runs every second on the ingest scheduler.
+     */
+    private void feed() {
+        try {
+            List<Ingest> active;
+            synchronized (ingests) {
+                active = ingests.values().stream().filter(i -> !i.pending.isEmpty()).toList();
+            }
+            boolean progressed = true;
+            while (progressed) {
+                progressed = false;
+                for (Ingest ingest : active) {
+                    if (jobs.queueRemaining() <= queueReserve) return;
+                    UUID docId = ingest.pending.peek();
+                    if (docId == null) continue;
+
+                    Document doc = documents.findById(docId).orElse(null);
+                    if (doc != null) {
+                        try {
+                            jobs.submit(doc, false);
+                            if (ingest.firstSubmitNanos == 0) ingest.firstSubmitNanos = System.nanoTime();
+                            ingest.submitted.incrementAndGet();
+                        } catch (JobAlreadyActiveException e) {
+                            // someone else queued it first; that job does the work
+                        } catch (QueueFullException e) {
+                            return;                         // try again on the next tick
+                        }
+                    }
+                    ingest.pending.poll();
+                    pendingRows.deleteById(docId);
+                    progressed = true;
+                }
+            }
+        } catch (RuntimeException e) {
+            // keep the schedule alive; the next tick retries
+            log.error("Ingest feeder failed", e);
+        }
+    }
+
+    private static boolean isPdfName(String name) {
+        String base = name.substring(name.lastIndexOf('/') + 1);
+        // macOS archives carry "._name.pdf" resource forks next to the real files
+        return name.toLowerCase().endsWith(".pdf") && !base.startsWith("._") && !name.startsWith("__MACOSX/");
+    }
+
+    /** One archive entry: closing it leaves the archive stream open for the next entry. */
+    private static final class EntryStream extends FilterInputStream {
+
+        EntryStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the archive stream is closed by its owner
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.sytion06.backend.service;
+
+/** Thrown when a document already has a queued or running processing job. */
+public class JobAlreadyActiveException extends RuntimeException {
+    public JobAlreadyActiveException(String message) {
+        super(message);
+    }
+}
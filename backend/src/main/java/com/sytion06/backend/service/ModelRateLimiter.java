@@ -0,0 +1,230 @@
+package com.sytion06.backend.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide admission control for model requests. A request needs a concurrency slot, one
+ * unit of the requests-per-minute budget and its estimated tokens from the tokens-per-minute
+ * budget (both refill continuously). Waiters are queued per document and served round-robin,
+ * so one large document cannot starve the others. Provider feedback tightens the budgets:
+ * a 429 pauses all dispatch for the {@code Retry-After} period, and rate-limit headers on
+ * successful responses cap the local buckets at what the provider says is left.
+ *
+ * <p>Nothing here blocks: {@link #acquire} returns a future that completes when the request
+ * may be sent, and refill waits are scheduled on the model scheduler.
+ */
+@Component
+public class ModelRateLimiter {
+
+    /** Held for the duration of one model call; release exactly once. */
+    public final class Permit {
+        private boolean released;
+
+        public void release() {
+            synchronized (ModelRateLimiter.this) {
+                if (released) return;
+                released = true;
+                inFlight--;
+            }
+            pump();
+        }
+    }
+
+    private record Waiter(int tokens, CompletableFuture<Permit> future) {}
+
+    private final ScheduledExecutorService scheduler;
+    private final int maxConcurrent;
+    private final double requestsPerMinute;
+    private final double tokensPerMinute;
+
+    // guarded by this
+    private final Map<UUID, Deque<Waiter>> queues = new HashMap<>();
+    private final Deque<UUID> rotation = new ArrayDeque<>();
+    private int inFlight;
+    private double requestBucket;
+    private double tokenBucket;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilNanos;
+    private long wakeupAtNanos = Long.MAX_VALUE;
+    private long dispatched;
+    private long rateLimited;
+
+    public ModelRateLimiter(@Qualifier("modelScheduler") ScheduledExecutorService scheduler,
+                            @Value("${qbank.processing.global-concurrency:32}") int maxConcurrent,
+                            @Value("${qbank.ratelimit.requests-per-minute:500}") int requestsPerMinute,
+                            @Value("${qbank.ratelimit.tokens-per-minute:200000}") int tokensPerMinute) {
+        this.scheduler = scheduler;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.requestsPerMinute = Math.max(1, requestsPerMinute);
+        this.tokensPerMinute = Math.max(1, tokensPerMinute);
+        this.requestBucket = this.requestsPerMinute;
+        this.tokenBucket = this.tokensPerMinute;
+    }
+
+    /** Queues a request of roughly {@code estimatedTokens} (prompt + image + expected output) for a document. */
+    public CompletableFuture<Permit> acquire(UUID docId, int estimatedTokens) {
+        // a single request larger than the whole minute budget would never fit; let it through on a full bucket
+        int tokens = (int) Math.min(Math.max(0, estimatedTokens), tokensPerMinute);
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        synchronized (this) {
+            Deque<Waiter> q = queues.computeIfAbsent(docId, k -> {
+                rotation.addLast(k);
+                return new ArrayDeque<>();
+            });
+            q.addLast(new Waiter(tokens, future));
+        }
+        pump();
+        return future;
+    }
+
+    /**
+     * Drops every request of {@code docId} still waiting for admission; their futures are cancelled.
+     * Used when a document's run fails, so its queue stops taking turns from the other documents.
+     */
+    public void cancelWaiting(UUID docId) {
+        Deque<Waiter> dropped;
+        synchronized (this) {
+            dropped = queues.remove(docId);
+            rotation.remove(docId);
+        }
+        if (dropped == null) return;
+        dropped.forEach(w -> w.future().cancel(false));
+        pump();
+    }
+
+    /** The provider answered 429: stop sending anything until {@code retryAfter} has passed. */
+    public void onRateLimited(Duration retryAfter) {
+        synchronized (this) {
+            rateLimited++;
+            long until = System.nanoTime() + retryAfter.toNanos();
+            pausedUntilNanos = Math.max(pausedUntilNanos, until);
+            requestBucket = 0;
+        }
+        pump();
+    }
+
+    /**
+     * Provider-reported budget ({@code x-ratelimit-remaining-*} / {@code x-ratelimit-reset-*}).
+     * Negative values mean the header was absent. The local buckets never exceed what is left.
+     */
+    public void onLimitsReported(long remainingRequests, long remainingTokens, Duration requestsReset, Duration tokensReset) {
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (remainingRequests >= 0) requestBucket = Math.min(requestBucket, remainingRequests);
+            if (remainingTokens >= 0) tokenBucket = Math.min(tokenBucket, remainingTokens);
+
+            long now = System.nanoTime();
+            if (remainingRequests == 0 && requestsReset != null) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + requestsReset.toNanos());
+            }
+            if (remainingTokens == 0 && tokensReset != null) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + tokensReset.toNanos());
+            }
+        }
+        pump();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        refill(System.nanoTime());
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("inFlight", inFlight);
+        out.put("maxConcurrent", maxConcurrent);
+        out.put("waiting", queues.values().stream().mapToInt(Deque::size).sum());
+        out.put("waitingDocuments", queues.size());
+        out.put("requestBudget", (long) requestBucket);
+        out.put("tokenBudget", (long) tokenBucket);
+        out.put("pausedForMs", Math.max(0, (pausedUntilNanos - System.nanoTime()) / 1_000_000));
+        out.put("dispatched", dispatched);
+        out.put("rateLimited", rateLimited);
+        return out;
+    }
+
+    private void pump() {
+        List<CompletableFuture<Permit>> ready = new ArrayList<>();
+        List<Permit> permits = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+
+            long waitNanos = 0;
+            while (inFlight < maxConcurrent && !rotation.isEmpty()) {
+                if (now < pausedUntilNanos) {
+                    waitNanos = pausedUntilNanos - now;
+                    break;
+                }
+
+                UUID doc = rotation.peekFirst();
+                Deque<Waiter> q = queues.get(doc);
+                Waiter head = q.peekFirst();
+                if (head.future().isDone()) {          // cancelled while queued
+                    q.pollFirst();
+                    dropIfEmpty(doc, q);
+                    continue;
+                }
+
+                if (requestBucket < 1 || tokenBucket < head.tokens()) {
+                    double needReq = Math.max(0, 1 - requestBucket) / requestsPerMinute;
+                    double needTok = Math.max(0, head.tokens() - tokenBucket) / tokensPerMinute;
+                    waitNanos = (long) (Math.max(needReq, needTok) * 60_000_000_000L) + 1;
+                    break;
+                }
+
+                requestBucket -= 1;
+                tokenBucket -= head.tokens();
+                inFlight++;
+                dispatched++;
+                q.pollFirst();
+
+                // round-robin: this document goes to the back of the line
+                rotation.pollFirst();
+                if (q.isEmpty()) queues.remove(doc);
+                else rotation.addLast(doc);
+
+                ready.add(head.future());
+                permits.add(new Permit());
+            }
+
+            if (waitNanos > 0) scheduleWakeup(now + waitNanos);
+        }
+
+        for (int i = 0; i < ready.size(); i++) {
+            if (!ready.get(i).complete(permits.get(i))) {
+                permits.get(i).release();                 // waiter went away meanwhile
+            }
+        }
+    }
+
+    private void dropIfEmpty(UUID doc, Deque<Waiter> q) {
+        if (q.isEmpty()) {
+            queues.remove(doc);
+            rotation.remove(doc);
+        }
+    }
+
+    private void refill(long now) {
+        double minutes = (now - lastRefillNanos) / 60_000_000_000.0;
+        lastRefillNanos = now;
+        requestBucket = Math.min(requestsPerMinute, requestBucket + minutes * requestsPerMinute);
+        tokenBucket = Math.min(tokensPerMinute, tokenBucket + minutes * tokensPerMinute);
+    }
+
+    private void scheduleWakeup(long atNanos) {
+        long now = System.nanoTime();
+        if (wakeupAtNanos > now && wakeupAtNanos <= atNanos) return;    // an earlier wake-up is pending
+        wakeupAtNanos = atNanos;
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                wakeupAtNanos = Long.MAX_VALUE;
+            }
+            pump();
+        }, Math.max(1, atNanos - now), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,148 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.PageCheckpoint;
+import com.sytion06.backend.model.PageMode;
+import com.sytion06.backend.model.PageState;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.repo.PageCheckpointRepository;
+import com.sytion06.backend.repo.QuestionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Short per-page transactions for the processing pipeline. Each page's questions and its
+ * checkpoint are committed together, so a later failure never rolls back finished pages.
+ * Lives in its own bean so the {@code @Transactional} proxy applies when the pipeline calls it.
+ */
+@Service
+public class PageCheckpointService {
+
+    private final PageCheckpointRepository checkpoints;
+    private final QuestionRepository questions;
+    private final SearchIndexService searchIndex;
+    private final CategoryStatsService categoryStats;
+
+    public PageCheckpointService(PageCheckpointRepository checkpoints, QuestionRepository questions,
+                                 SearchIndexService searchIndex, CategoryStatsService categoryStats) {
+        this.checkpoints = checkpoints;
+        this.questions = questions;
+        this.searchIndex = searchIndex;
+        this.categoryStats = categoryStats;
+    }
+
+    @Transactional(readOnly = true)
+    public Set<Integer> donePages(UUID docId) {
+        return checkpoints.findByDocumentIdOrderByPageIndexAsc(docId).stream()
+                .filter(c -> c.getState() == PageState.DONE)
+                .map(PageCheckpoint::getPageIndex)
+                .collect(Collectors.toSet());
+    }
+
+    @Transactional
+    public void markPending(UUID docId, int pageIndex, PageMode mode) {
+        PageCheckpoint c = load(docId, pageIndex);
+        c.setState(PageState.PENDING);
+        c.setMode(mode);
+        checkpoints.save(c);
+    }
+
+    /** Replaces whatever the page had before with {@code extracted} and marks the page DONE. */
+    @Transactional
+    public void commitPage(UUID docId, int pageIndex, List<Question> extracted) {
+        CategoryStatsService.Delta delta = categoryStats.removingPage(docId, pageIndex);
+        questions.deleteByDocumentIdAndPageIndex(docId, pageIndex);
+        searchIndex.removePage(docId, pageIndex);
+        if (!extracted.isEmpty()) {
+            List<Question> saved = questions.saveAll(extracted);
+            searchIndex.index(saved);
+            delta.add(saved);
+        }
+
+        PageCheckpoint c = load(docId, pageIndex);
+        c.setState(PageState.DONE);
+        c.setAttempts(c.getAttempts() + 1);
+        c.setQuestionCount(extracted.size());
+        c.setLastError(null);
+        checkpoints.save(c);
+        categoryStats.apply(delta);
+    }
+
+    @Transactional
+    public void markFailed(UUID docId, int pageIndex, String error) {
+        PageCheckpoint c = load(docId, pageIndex);
+        c.setState(PageState.FAILED);
+        c.setAttempts(c.getAttempts() + 1);
+        c.setLastError(error);
+        checkpoints.save(c);
+    }
+
+    /**
+     * Gives {@code targetId} its own copy of every question and page checkpoint of {@code sourceId}.
+     * Used when an upload is byte-identical to a document that was already processed.
+     */
+    @Transactional
+    public int cloneExtraction(UUID sourceId, UUID targetId) {
+        CategoryStatsService.Delta delta = categoryStats.removingDocument(targetId);
+        questions.deleteByDocumentId(targetId);
+        searchIndex.removeDocument(targetId);
+        checkpoints.deleteByDocumentId(targetId);
+
+        List<Question> copies = questions.findByDocumentIdOrderByPageIndexAsc(sourceId).stream()
+                .map(q -> {
+                    Question c = new Question();
+                    c.setDocumentId(targetId);
+                    c.setPageIndex(q.getPageIndex());
+                    c.setNumberLabel(q.getNumberLabel());
+                    c.setStem(q.getStem());
+                    c.setChoicesJson(q.getChoicesJson());
+                    c.setCategory(q.getCategory());
+                    c.setConfidence(q.getConfidence());
+                    c.setNeedsReview(q.isNeedsReview());
+                    c.setReviewReason(q.getReviewReason());
+                    c.setHasFigure(q.isHasFigure());
+                    c.setPageImageFile(q.getPageImageFile());
+                    return c;
+                })
+                .toList();
+        List<Question> saved = questions.saveAll(copies);
+        searchIndex.index(saved);
+        delta.add(saved);
+
+        for (PageCheckpoint src : checkpoints.findByDocumentIdOrderByPageIndexAsc(sourceId)) {
+            PageCheckpoint c = new PageCheckpoint();
+            c.setDocumentId(targetId);
+            c.setPageIndex(src.getPageIndex());
+            c.setState(src.getState());
+            c.setMode(src.getMode());
+            c.setQuestionCount(src.getQuestionCount());
+            c.setLastError(src.getLastError());
+            checkpoints.save(c);
+        }
+        categoryStats.apply(delta);
+        return copies.size();
+    }
+
+    /** Forgets all progress for a document, used for a full (non-resuming) reprocess. */
+    @Transactional
+    public void reset(UUID docId) {
+        CategoryStatsService.Delta delta = categoryStats.removingDocument(docId);
+        questions.deleteByDocumentId(docId);
+        searchIndex.removeDocument(docId);
+        checkpoints.deleteByDocumentId(docId);
+        categoryStats.apply(delta);
+    }
+
+    private PageCheckpoint load(UUID docId, int pageIndex) {
+        return checkpoints.findByDocumentIdAndPageIndex(docId, pageIndex).orElseGet(() -> {
+            PageCheckpoint c = new PageCheckpoint();
+            c.setDocumentId(docId);
+            c.setPageIndex(pageIndex);
+            return c;
+        });
+    }
+}
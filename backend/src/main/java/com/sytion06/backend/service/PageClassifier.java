@@ -0,0 +1,131 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.PageMode;
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.util.Matrix;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+
+/**
+ * Decides locally whether a page can be extracted from its text layer alone. A page qualifies
+ * when it has enough text, nearly every glyph maps to Unicode, and it draws neither a sizeable
+ * image nor a vector figure (curves or slanted lines; rules and table borders do not count).
+ * Everything else, scans in particular, keeps the image path.
+ */
+@Component
+public class PageClassifier {
+
+    public record Classification(PageMode mode, String reason) {}
+
+    private final boolean enabled;
+    private final int minGlyphs;
+    private final double minCoverage;
+    private final double minImageArea;
+
+    public PageClassifier(@Value("${qbank.processing.text-only.enabled:true}") boolean enabled,
+                          @Value("${qbank.processing.text-only.min-glyphs:80}") int minGlyphs,
+                          @Value("${qbank.processing.text-only.min-coverage:0.98}") double minCoverage,
+                          @Value("${qbank.processing.text-only.min-image-area:0.01}") double minImageArea) {
+        this.enabled = enabled;
+        this.minGlyphs = minGlyphs;
+        this.minCoverage = minCoverage;
+        this.minImageArea = minImageArea;
+    }
+
+    public Classification classify(PDPage page, PageTextStripper.PageText text) throws IOException {
+        if (!enabled) return new Classification(PageMode.VISION, "text-only mode disabled");
+        if (text.failure() != null) {
+            return new Classification(PageMode.VISION, "unreadable text layer (" + text.failure() + ")");
+        }
+        if (text.glyphs() < minGlyphs) {
+            return new Classification(PageMode.VISION, "sparse text layer (" + text.glyphs() + " glyphs)");
+        }
+        if (text.coverage() < minCoverage) {
+            return new Classification(PageMode.VISION,
+                    String.format("unmapped glyphs (%.0f%% coverage)", text.coverage() * 100));
+        }
+
+        GraphicsProbe probe = new GraphicsProbe(page);
+        probe.processPage(page);
+
+        PDRectangle box = page.getCropBox();
+        double pageArea = Math.abs(box.getWidth() * box.getHeight());
+        if (pageArea > 0 && probe.largestImageArea / pageArea >= minImageArea) {
+            return new Classification(PageMode.VISION, "embedded image");
+        }
+        if (probe.looksLikeFigure()) {
+            return new Classification(PageMode.VISION, "vector drawing");
+        }
+        return new Classification(PageMode.TEXT, "clean text layer");
+    }
+
+    /** Walks the content stream without rasterizing, noting images and non-trivial path geometry. */
+    private static final class GraphicsProbe extends PDFGraphicsStreamEngine {
+
+        double largestImageArea;
+        int curves;
+        int slantedLines;
+        private float x;
+        private float y;
+
+        GraphicsProbe(PDPage page) {
+            super(page);
+        }
+
+        boolean looksLikeFigure() {
+            return curves >= 4 || slantedLines >= 6;
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+            // images are drawn into the unit square, so the CTM's scale is the size on the page
+            Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+            double area = Math.abs(ctm.getScalingFactorX() * ctm.getScalingFactorY());
+            largestImageArea = Math.max(largestImageArea, area);
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            float dx = Math.abs(x - this.x);
+            float dy = Math.abs(y - this.y);
+            // horizontal/vertical strokes are underlines, fraction bars and table borders
+            if (dx > 1 && dy > 1) slantedLines++;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            curves++;
+            this.x = x3;
+            this.y = y3;
+        }
+
+        @Override
+        public Point2D getCurrentPoint() {
+            return new Point2D.Float(x, y);
+        }
+
+        @Override public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {}
+        @Override public void clip(int windingRule) {}
+        @Override public void closePath() {}
+        @Override public void endPath() {}
+        @Override public void strokePath() {}
+        @Override public void fillPath(int windingRule) {}
+        @Override public void fillAndStrokePath(int windingRule) {}
+        @Override public void shadingFill(COSName shadingName) {}
+    }
+}
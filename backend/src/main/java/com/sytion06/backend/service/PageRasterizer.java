@@ -0,0 +1,127 @@
+package com.sytion06.backend.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+import org.apache.pdfbox.rendering.RenderDestination;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Renders pages of one document to PNG files. Pages of the same size (nearly all of them in a
+ * book or exam) are drawn into one reused RGB buffer instead of a fresh image per page, and the
+ * PNG is encoded straight to disk. Not thread-safe: one instance per document run.
+ */
+public class PageRasterizer {
+
+    private final PDDocument pdf;
+    private final PDFRenderer renderer;
+    private final float scale;
+    private BufferedImage buffer;
+
+    /** {@code subsampling} lets PDFBox decode large scans at the target resolution instead of in full. */
+    public PageRasterizer(PDDocument pdf, int dpi, boolean subsampling) {
+        this.pdf = pdf;
+        this.scale = dpi / 72f;
+        this.renderer = subsampling ? new SubsamplingRenderer(pdf, scale) : new PDFRenderer(pdf);
+        this.renderer.setSubsamplingAllowed(subsampling);
+    }
+
+    /**
+     * Opens a document for rendering. In bounded-memory mode PDFBox buffers the parsed file in temp
+     * files rather than on the heap, and decoded images are not kept in the document's resource
+     * cache between pages.
+     */
+    public static PDDocument open(Path pdfPath, boolean boundedMemory) throws IOException {
+        if (!boundedMemory) {
+            return Loader.loadPDF(pdfPath.toFile());
+        }
+        PDDocument pdf = Loader.loadPDF(pdfPath.toFile(), IOUtils.createTempFileOnlyStreamCache());
+        pdf.setResourceCache(new DefaultResourceCache() {
+            @Override
+            public void put(COSObject indirect, PDXObject xobject) {
+                // a scanned book repeats no images; caching them only grows the heap
+            }
+        });
+        return pdf;
+    }
+
+    /** Writes page {@code pageIndex} to {@code out}; readers never see a half-written file. */
+    public void render(int pageIndex, Path out) throws IOException {
+        PDPage page = pdf.getPage(pageIndex);
+        PDRectangle crop = page.getCropBox();
+        // same pixel size as PDFRenderer.renderImage
+        int w = (int) Math.max(Math.floor(crop.getWidth() * scale), 1);
+        int h = (int) Math.max(Math.floor(crop.getHeight() * scale), 1);
+        if (page.getRotation() % 180 != 0) {
+            int t = w;
+            w = h;
+            h = t;
+        }
+
+        if (buffer == null || buffer.getWidth() != w || buffer.getHeight() != h) {
+            buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+
+        Graphics2D g = buffer.createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            renderer.renderPageToGraphics(pageIndex, g, scale, scale, RenderDestination.EXPORT);
+        } finally {
+            g.dispose();
+        }
+
+        Path tmp = out.resolveSibling(out.getFileName() + ".part");
+        if (!ImageIO.write(buffer, "png", tmp.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * PDFBox subsamples by the whole-number floor of the image-to-device pixel ratio. A 300 DPI A4
+     * scan drawn at 150 DPI comes out at 1.9999 (page sizes are whole points, scans whole pixels),
+     * so it was decoded at full size, some 26 MB per page. The same ratio with a little tolerance.
+     */
+    private static final class SubsamplingRenderer extends PDFRenderer {
+        private final float scale;
+
+        SubsamplingRenderer(PDDocument pdf, float scale) {
+            super(pdf);
+            this.scale = scale;
+        }
+
+        @Override
+        protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+            return new PageDrawer(parameters) {
+                @Override
+                protected int getSubsampling(PDImage image, AffineTransform at) {
+                    double devicePixels = Math.abs(at.getDeterminant()) * scale * scale;
+                    double ratio = Math.sqrt(image.getWidth() * (double) image.getHeight() / devicePixels);
+                    int subsampling = (int) Math.floor(ratio + 0.01);
+                    subsampling = Math.max(1, Math.min(8, subsampling));
+                    return Math.min(subsampling, Math.min(image.getWidth(), image.getHeight()));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.sytion06.backend.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Text layer of a whole document in one traversal, split per page, plus how many of each page's
+ * glyphs have a Unicode mapping. Glyphs without one (subset fonts lacking a ToUnicode table, for
+ * instance) are dropped or garbled in the text, so a low coverage means the text layer cannot be
+ * trusted on its own.
+ */
+public class PageTextStripper extends PDFTextStripper {
+
+    private static final Logger log = LoggerFactory.getLogger(PageTextStripper.class);
+
+    /** {@code failure} is why the page's text layer could not be read, or null if it was read. */
+    public record PageText(String text, int glyphs, int unmappedGlyphs, String failure) {
+        static final PageText EMPTY = new PageText("", 0, 0, null);
+
+        static PageText failed(String failure) {
+            return new PageText("", 0, 0, failure);
+        }
+
+        /** Share of glyphs with a Unicode mapping; 1.0 for a page without glyphs. */
+        public double coverage() {
+            return glyphs == 0 ? 1.0 : (glyphs - unmappedGlyphs) / (double) glyphs;
+        }
+    }
+
+    private final StringWriter buffer = new StringWriter();
+    private List<PageText> pages;
+    private Predicate<CharSequence> stopAt;
+    private int stopIndex;
+    private int glyphs;
+    private int unmapped;
+
+    /**
+     * Returns the text of every page before the first one matching {@code stopAt} (the match
+     * itself is excluded). Pages after the match are not parsed at all.
+     */
+    public List<PageText> extract(PDDocument pdf, Predicate<CharSequence> stopAt) throws IOException {
+        int pageCount = pdf.getNumberOfPages();
+        // pages without a content stream never reach startPage/endPage; they stay empty
+        pages = new ArrayList<>(Collections.nCopies(pageCount, PageText.EMPTY));
+        this.stopAt = stopAt;
+        stopIndex = pageCount;
+
+        setStartPage(1);
+        setEndPage(Integer.MAX_VALUE);
+        buffer.getBuffer().setLength(0);
+        writeText(pdf, buffer);
+
+        List<PageText> out = pages.subList(0, stopIndex);
+        pages = null;
+        return out;
+    }
+
+    /**
+     * A page whose text layer cannot be parsed is recorded as failed rather than failing the whole
+     * document; {@link PageClassifier} then sends it down the image path.
+     */
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        try {
+            super.processPage(page);
+        } catch (IOException | RuntimeException e) {
+            int pageNo = getCurrentPageNo();
+            log.warn("Could not read the text layer of page {}; it goes to the model as an image", pageNo, e);
+            if (pageNo - 1 < stopIndex) pages.set(pageNo - 1, PageText.failed(e.toString()));
+        }
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        buffer.getBuffer().setLength(0);
+        glyphs = 0;
+        unmapped = 0;
+        super.startPage(page);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        super.endPage(page);
+        int index = getCurrentPageNo() - 1;
+        StringBuffer text = buffer.getBuffer();
+        if (stopAt != null && stopAt.test(text)) {
+            stopIndex = index;
+            // later pages fall outside the range and are skipped without being parsed
+            setEndPage(getCurrentPageNo());
+            return;
+        }
+        pages.set(index, new PageText(text.toString(), glyphs, unmapped, null));
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+        glyphs++;
+        String unicode = font.toUnicode(code);
+        if (unicode == null || unicode.isEmpty() || unicode.indexOf('\uFFFD') >= 0) {
+            unmapped++;
+        }
+        super.showGlyph(textRenderingMatrix, font, code, displacement);
+    }
+}
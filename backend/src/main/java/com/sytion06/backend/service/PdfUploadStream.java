@@ -0,0 +1,76 @@
+package com.sytion06.backend.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Checks upload bytes as they pass through: the file must start with {@code %PDF-} and must not
+ * grow beyond {@code maxBytes}. Nothing is buffered, so a bad upload fails as soon as the offending
+ * byte arrives rather than after the whole body has been written.
+ *
+ * <p>{@code offset} is where this stream starts within the file, for chunks of a resumable upload.
+ * With {@code wholeFile}, the end of the stream is the end of the file, so a body shorter than the
+ * header is rejected too.
+ */
+public class PdfUploadStream extends FilterInputStream {
+
+    private static final byte[] MAGIC = {'%', 'P', 'D', 'F', '-'};
+
+    private final long maxBytes;
+    private final boolean wholeFile;
+    private long position;
+
+    public PdfUploadStream(InputStream in, long offset, long maxBytes, boolean wholeFile) {
+        super(in);
+        this.position = offset;
+        this.maxBytes = maxBytes;
+        this.wholeFile = wholeFile;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b < 0) {
+            atEnd();
+            return b;
+        }
+        check(new byte[]{(byte) b}, 0, 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        int n = super.read(buf, off, len);
+        if (n < 0) {
+            atEnd();
+            return n;
+        }
+        check(buf, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // every byte has to be seen
+        return Math.max(0, read(new byte[(int) Math.max(0, Math.min(n, 8192))]));
+    }
+
+    private void check(byte[] buf, int off, int n) throws UploadRejectedException {
+        for (int i = 0; position + i < MAGIC.length && i < n; i++) {
+            if (buf[off + i] != MAGIC[(int) position + i]) {
+                throw new UploadRejectedException("Not a PDF file (no %PDF- header)", false);
+            }
+        }
+        position += n;
+        if (position > maxBytes) {
+            throw new UploadRejectedException("File is larger than " + maxBytes / (1024 * 1024) + " MB", true);
+        }
+    }
+
+    private void atEnd() throws UploadRejectedException {
+        if (wholeFile && position < MAGIC.length) {
+            throw new UploadRejectedException("Not a PDF file (no %PDF- header)", false);
+        }
+    }
+}
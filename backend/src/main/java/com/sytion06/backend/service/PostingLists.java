@@ -0,0 +1,364 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.TermVector;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The question search index inverted: for every term, the questions holding it in ascending
+ * order of a question number, with the term's weight in each. Numbers are handed out as
+ * questions are added and never reused while their question is in the index, so appending keeps
+ * every list in order; they index arrays holding each question's id and category.
+ *
+ * <p>A query walks its rarest term's list and looks each question up in the other terms' lists
+ * by galloping search, so it costs about the rarest list's length and scores every question that
+ * holds all terms. Removing questions takes them out of the lists of their terms; once more
+ * numbers are dead than alive, the rest are renumbered in order, which keeps the lists sorted.
+ * About five bytes per posting. Reads share a lock, changes take it exclusively.
+ */
+final class PostingLists {
+
+    /** One page of a ranking, and the number of questions ranked. */
+    record Ranked(List<UUID> ids, long total) {}
+
+    /** One term's postings: question numbers ascending, and the weight of each. */
+    private static final class Postings {
+        int[] questions = new int[4];
+        byte[] weights = new byte[4];
+        int size;
+
+        void add(int question, int weight) {
+            if (size == questions.length) {
+                int capacity = size + (size >> 1) + 1;
+                questions = Arrays.copyOf(questions, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            questions[size] = question;
+            weights[size++] = (byte) weight;
+        }
+
+        int weight(int i) {
+            return weights[i] & 0xFF;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> byTerm = new HashMap<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    // document -> page -> numbers of the page's questions
+    private final Map<UUID, Map<Integer, int[]>> pages = new HashMap<>();
+    private final BitSet removed = new BitSet();
+    // by question number
+    private long[] idHigh = new long[1024];
+    private long[] idLow = new long[1024];
+    private int[] categoryOf = new int[1024];
+    private int numbered;
+    private int live;
+
+    /** Adds questions that are not in the lists yet. */
+    void add(List<TermVector> vectors) {
+        lock.writeLock().lock();
+        try {
+            for (TermVector v : vectors) {
+                int q = number(v);
+                TermVector.decode(v.getTerms(), (term, weight) -> byTerm.computeIfAbsent(term, t -> new Postings()).add(q, weight));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Takes out the questions of a page; {@code terms} are their encoded term vectors. */
+    void removePage(UUID documentId, int pageIndex, List<byte[]> terms) {
+        lock.writeLock().lock();
+        try {
+            Map<Integer, int[]> document = pages.get(documentId);
+            int[] questions = document == null ? null : document.remove(pageIndex);
+            if (document != null && document.isEmpty()) pages.remove(documentId);
+            if (questions != null) remove(List.of(questions), terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Takes out the questions of a document; {@code terms} are their encoded term vectors. */
+    void removeDocument(UUID documentId, List<byte[]> terms) {
+        lock.writeLock().lock();
+        try {
+            Map<Integer, int[]> document = pages.remove(documentId);
+            if (document != null) remove(document.values(), terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Gives back the room the lists grew into; for after a bulk load. */
+    void trim() {
+        lock.writeLock().lock();
+        try {
+            for (Postings p : byTerm.values()) {
+                if (p.questions.length == p.size) continue;
+                p.questions = Arrays.copyOf(p.questions, Math.max(p.size, 1));
+                p.weights = Arrays.copyOf(p.weights, p.questions.length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            byTerm.clear();
+            categoryCodes.clear();
+            pages.clear();
+            removed.clear();
+            numbered = 0;
+            live = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Questions in the lists. */
+    int questions() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Postings in all lists. */
+    long postings() {
+        lock.readLock().lock();
+        try {
+            return byTerm.values().stream().mapToLong(p -> p.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Distinct terms in the lists. */
+    int terms() {
+        lock.readLock().lock();
+        try {
+            return byTerm.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Questions holding every one of {@code terms}, by the sum of each term's weight times its
+     * IDF, then newest (highest id) first.
+     *
+     * @param category lower-cased category to keep to, or null for all
+     */
+    Ranked rank(Collection<String> terms, String category, long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[terms.size()];
+            int t = 0;
+            for (String term : terms) {
+                lists[t] = byTerm.get(term);
+                if (lists[t++] == null) return new Ranked(List.of(), 0);
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+            int code = -1;
+            if (category != null) {
+                Integer c = categoryCodes.get(category);
+                if (c == null) return new Ranked(List.of(), 0);
+                code = c;
+            }
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) idf[i] = idf(live, lists[i].size);
+
+            Postings lead = lists[0];
+            TopScores top = new TopScores((int) Math.min(offset + limit, lead.size));
+            int[] at = new int[lists.length];
+            long total = 0;
+            candidates:
+            for (int i = 0; i < lead.size; i++) {
+                int q = lead.questions[i];
+                if (code >= 0 && categoryOf[q] != code) continue;
+                double score = lead.weight(i) * idf[0];
+                for (int j = 1; j < lists.length; j++) {
+                    Postings p = lists[j];
+                    int k = at[j] = advance(p, at[j], q);
+                    if (k == p.size) break candidates;      // nothing after q holds this term
+                    if (p.questions[k] != q) continue candidates;
+                    score += p.weight(k) * idf[j];
+                }
+                total++;
+                top.offer(score, q);
+            }
+
+            int[] ranked = top.drain();
+            List<UUID> ids = new ArrayList<>();
+            for (long i = offset; i < ranked.length; i++) {
+                int q = ranked[(int) i];
+                ids.add(new UUID(idHigh[q], idLow[q]));
+            }
+            return new Ranked(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static double idf(long n, long df) {
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    /** The first position from {@code from} on whose question is at least {@code q}, or the list's size. */
+    private static int advance(Postings p, int from, int q) {
+        int[] a = p.questions;
+        if (from >= p.size || a[from] >= q) return from;
+        // a[low] < q; double the step until a[high] >= q, then search in between
+        int low = from;
+        int step = 1;
+        int high = from + 1;
+        while (high < p.size && a[high] < q) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        int found = Arrays.binarySearch(a, low + 1, Math.min(high, p.size), q);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private int number(TermVector v) {
+        if (numbered == idHigh.length) {
+            int capacity = numbered + (numbered >> 1);
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            categoryOf = Arrays.copyOf(categoryOf, capacity);
+        }
+        int q = numbered++;
+        idHigh[q] = v.getQuestionId().getMostSignificantBits();
+        idLow[q] = v.getQuestionId().getLeastSignificantBits();
+        categoryOf[q] = v.getCategory() == null ? -1 : categoryCodes.computeIfAbsent(v.getCategory(), c -> categoryCodes.size());
+        pages.computeIfAbsent(v.getDocumentId(), d -> new HashMap<>()).merge(v.getPageIndex(), new int[]{q}, PostingLists::concat);
+        live++;
+        return q;
+    }
+
+    private void remove(Collection<int[]> questions, List<byte[]> terms) {
+        for (int[] numbers : questions) {
+            for (int q : numbers) removed.set(q);
+            live -= numbers.length;
+        }
+        Set<String> touched = new HashSet<>();
+        for (byte[] vector : terms) TermVector.decode(vector, (term, weight) -> touched.add(term));
+        for (String term : touched) {
+            Postings p = byTerm.get(term);
+            if (p == null) continue;
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                if (removed.get(p.questions[i])) continue;
+                p.questions[kept] = p.questions[i];
+                p.weights[kept++] = p.weights[i];
+            }
+            p.size = kept;
+            if (kept == 0) byTerm.remove(term);
+        }
+        if (numbered - live > Math.max(live, 1 << 16)) renumber();
+    }
+
+    /** Closes the gaps left by removed questions; numbers keep their order, so lists stay sorted. */
+    private void renumber() {
+        int[] to = new int[numbered];
+        int n = 0;
+        for (int q = 0; q < numbered; q++) {
+            if (removed.get(q)) continue;
+            idHigh[n] = idHigh[q];
+            idLow[n] = idLow[q];
+            categoryOf[n] = categoryOf[q];
+            to[q] = n++;
+        }
+        for (Iterator<Postings> lists = byTerm.values().iterator(); lists.hasNext(); ) {
+            Postings p = lists.next();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                if (removed.get(p.questions[i])) continue;
+                p.questions[kept] = to[p.questions[i]];
+                p.weights[kept++] = p.weights[i];
+            }
+            p.size = kept;
+            if (kept == 0) lists.remove();
+        }
+        for (Map<Integer, int[]> document : pages.values()) {
+            for (int[] numbers : document.values()) {
+                for (int i = 0; i < numbers.length; i++) numbers[i] = to[numbers[i]];
+            }
+        }
+        numbered = n;
+        removed.clear();
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    /** The best {@code capacity} (score, question) pairs seen, in a heap whose root is the worst of them. */
+    private final class TopScores {
+        private final double[] scores;
+        private final int[] questions;
+        private int size;
+
+        TopScores(int capacity) {
+            scores = new double[Math.max(capacity, 0)];
+            questions = new int[scores.length];
+        }
+
+        void offer(double score, int q) {
+            if (size < scores.length) {
+                int i = size++;
+                while (i > 0 && better(scores[(i - 1) / 2], questions[(i - 1) / 2], score, q)) {
+                    scores[i] = scores[(i - 1) / 2];
+                    questions[i] = questions[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                scores[i] = score;
+                questions[i] = q;
+            } else if (size > 0 && better(score, q, scores[0], questions[0])) {
+                siftDown(score, q);
+            }
+        }
+
+        /** The questions, best first. */
+        int[] drain() {
+            int[] out = new int[size];
+            for (int i = out.length - 1; i >= 0; i--) {
+                out[i] = questions[0];
+                if (--size > 0) siftDown(scores[size], questions[size]);
+            }
+            return out;
+        }
+
+        private void siftDown(double score, int q) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && better(scores[child], questions[child], scores[child + 1], questions[child + 1])) child++;
+                if (!better(score, q, scores[child], questions[child])) break;
+                scores[i] = scores[child];
+                questions[i] = questions[child];
+                i = child;
+            }
+            scores[i] = score;
+            questions[i] = q;
+        }
+
+        private boolean better(double score, int q, double otherScore, int other) {
+            if (score != otherScore) return score > otherScore;
+            int c = Long.compareUnsigned(idHigh[q], idHigh[other]);
+            return c != 0 ? c > 0 : Long.compareUnsigned(idLow[q], idLow[other]) > 0;
+        }
+    }
+}
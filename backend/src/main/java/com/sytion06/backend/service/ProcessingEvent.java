@@ -0,0 +1,67 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.DocumentStatus;
+import com.sytion06.backend.model.PageMode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Progress of one document run, published as a Spring application event by the pipeline and
+ * relayed to subscribers of {@code GET /api/documents/{id}/events}. {@code type} is the SSE
+ * event name; {@code data} its JSON payload.
+ */
+public record ProcessingEvent(UUID documentId, String type, Map<String, Object> data) {
+
+    public static final String DOCUMENT_STARTED = "document-started";
+    public static final String PAGE_STARTED = "page-started";
+    public static final String QUESTION_EXTRACTED = "question-extracted";
+    public static final String PAGE_DONE = "page-done";
+    public static final String PAGE_FAILED = "page-failed";
+    public static final String DOCUMENT_FINISHED = "document-finished";
+
+    public static ProcessingEvent documentStarted(UUID docId) {
+        return new ProcessingEvent(docId, DOCUMENT_STARTED, data("status", DocumentStatus.PROCESSING.name()));
+    }
+
+    public static ProcessingEvent pageStarted(UUID docId, int pageIndex, PageMode mode) {
+        return new ProcessingEvent(docId, PAGE_STARTED, data("pageIndex", pageIndex, "mode", mode.name()));
+    }
+
+    /**
+     * A question read from a streamed answer before its page is committed. {@code attempt} tells
+     * questions of a retried page apart; only the page-done event means they are stored.
+     */
+    public static ProcessingEvent questionExtracted(UUID docId, int pageIndex, int attempt, String numberLabel,
+                                                    String category, String stem) {
+        return new ProcessingEvent(docId, QUESTION_EXTRACTED, data("pageIndex", pageIndex, "attempt", attempt,
+                "numberLabel", numberLabel, "category", category, "stem", stem));
+    }
+
+    public static ProcessingEvent pageDone(UUID docId, int pageIndex, int questionCount) {
+        return new ProcessingEvent(docId, PAGE_DONE, data("pageIndex", pageIndex, "questionCount", questionCount));
+    }
+
+    public static ProcessingEvent pageFailed(UUID docId, int pageIndex, String error) {
+        return new ProcessingEvent(docId, PAGE_FAILED, data("pageIndex", pageIndex, "error", error));
+    }
+
+    public static ProcessingEvent documentFinished(UUID docId, DocumentStatus status, String lastError, long questionCount) {
+        return new ProcessingEvent(docId, DOCUMENT_FINISHED,
+                data("status", status.name(), "lastError", lastError, "questionCount", questionCount));
+    }
+
+    public boolean isFinal() {
+        return DOCUMENT_FINISHED.equals(type);
+    }
+
+    // LinkedHashMap rather than Map.of: keeps field order and allows null values
+    private static Map<String, Object> data(Object... kv) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) {
+            m.put((String) kv[i], kv[i + 1]);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,154 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.model.Document;
+import com.sytion06.backend.model.DocumentStatus;
+import com.sytion06.backend.model.JobStatus;
+import com.sytion06.backend.model.ProcessingJob;
+import com.sytion06.backend.repo.DocumentRepository;
+import com.sytion06.backend.repo.ProcessingJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Background scheduler for document processing. Each submission gets a persisted
+ * {@link ProcessingJob} and runs on the bounded job executor, so the HTTP thread
+ * returns immediately.
+ */
+@Service
+public class ProcessingJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessingJobService.class);
+
+    private static final Set<JobStatus> ACTIVE = EnumSet.of(JobStatus.QUEUED, JobStatus.RUNNING);
+
+    private final ProcessingJobRepository jobs;
+    private final DocumentRepository documents;
+    private final DocumentProcessingService processing;
+    private final ThreadPoolExecutor executor;
+
+    public ProcessingJobService(ProcessingJobRepository jobs, DocumentRepository documents,
+                                DocumentProcessingService processing,
+                                @Qualifier("jobExecutor") ThreadPoolExecutor executor) {
+        this.jobs = jobs;
+        this.documents = documents;
+        this.processing = processing;
+        this.executor = executor;
+    }
+
+    public boolean isActive(UUID docId) {
+        return jobs.existsByDocumentIdAndStatusIn(docId, ACTIVE);
+    }
+
+    /**
+     * Queues processing for a document.
+     *
+     * @param full start over instead of resuming from the page checkpoints
+     * @throws JobAlreadyActiveException when the document already has a queued or running job
+     * @throws QueueFullException when the job queue is at capacity
+     */
+    public synchronized ProcessingJob submit(Document doc, boolean full) {
+        // checked under the same lock that saves the job, so two callers cannot both pass it
+        if (isActive(doc.getId())) {
+            throw new JobAlreadyActiveException("Document is already processing");
+        }
+        DocumentStatus previous = doc.getStatus();
+
+        ProcessingJob job = new ProcessingJob();
+        job.setDocumentId(doc.getId());
+        job.setStatus(JobStatus.QUEUED);
+        job.setFullReprocess(full);
+        job = jobs.save(job);
+
+        doc.setStatus(DocumentStatus.QUEUED);
+        documents.save(doc);
+
+        UUID jobId = job.getId();
+        try {
+            executor.execute(() -> run(jobId));
+        } catch (RejectedExecutionException e) {
+            jobs.deleteById(jobId);
+            doc.setStatus(previous);
+            documents.save(doc);
+            throw new QueueFullException("Processing queue is full (" + executor.getQueue().size() + " waiting)");
+        }
+        return job;
+    }
+
+    /** Jobs that can still be queued before submissions are rejected. */
+    public int queueRemaining() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("queued", executor.getQueue().size());
+        out.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        out.put("running", executor.getActiveCount());
+        out.put("workers", executor.getMaximumPoolSize());
+        out.put("completed", executor.getCompletedTaskCount());
+        return out;
+    }
+
+    private void run(UUID jobId) {
+        ProcessingJob job = jobs.findById(jobId).orElse(null);
+        if (job == null) return;
+
+        job.setStatus(JobStatus.RUNNING);
+        job.setStartedAt(Instant.now());
+        job = jobs.save(job);
+
+        UUID docId = job.getDocumentId();
+        try {
+            processing.process(docId, job.isFullReprocess());
+            job.setStatus(JobStatus.FINISHED);
+        } catch (Exception e) {
+            log.error("Processing job {} for document {} failed", jobId, docId, e);
+            String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            job.setStatus(JobStatus.FAILED);
+            job.setError(error);
+
+            documents.findById(docId).ifPresent(d -> {
+                // Only mark FAILED if still in flight (prevents overwriting DONE from a later run)
+                if (d.getStatus() == DocumentStatus.PROCESSING || d.getStatus() == DocumentStatus.QUEUED) {
+                    d.setStatus(DocumentStatus.FAILED);
+                    d.setLastError(error);
+                    documents.save(d);
+                }
+            });
+        }
+        job.setFinishedAt(Instant.now());
+        jobs.save(job);
+    }
+
+    /** Jobs that were queued or running when the server stopped will never complete; close them out. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failOrphanedJobs() {
+        for (ProcessingJob job : jobs.findByStatusIn(ACTIVE)) {
+            job.setStatus(JobStatus.FAILED);
+            job.setError("Interrupted by server restart");
+            job.setFinishedAt(Instant.now());
+            jobs.save(job);
+
+            documents.findById(job.getDocumentId()).ifPresent(d -> {
+                if (d.getStatus() == DocumentStatus.PROCESSING || d.getStatus() == DocumentStatus.QUEUED) {
+                    d.setStatus(DocumentStatus.FAILED);
+                    d.setLastError("Interrupted by server restart");
+                    documents.save(d);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.sytion06.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.sytion06.backend.model.Question;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps the model's answer ({@code {"questions": [...]}}) token by token onto {@link Question}
+ * entities, without building a tree of the whole answer. Each question is handed to the sink as
+ * soon as its closing brace is read, so the same parser serves a complete answer
+ * ({@link #parse}) and one that arrives in pieces ({@link #incremental}).
+ *
+ * <p>Entities carry only what the answer says; the caller fills in the document, page and image.
+ * Fields it does not know are skipped; {@code choices} is kept verbatim as JSON.
+ */
+public class QuestionJsonParser {
+
+    public interface Sink {
+        /** {@code pageIndex} is the question's own {@code pageIndex} field (batched answers), or null. */
+        void accept(Integer pageIndex, Question question) throws IOException;
+    }
+
+    private final JsonFactory factory;
+
+    public QuestionJsonParser(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /** Parses a complete answer. Returns false if it has no {@code questions} array. */
+    public boolean parse(String json, Sink sink) throws IOException {
+        State state = new State(factory, sink);
+        try (JsonParser p = factory.createParser(json)) {
+            JsonToken t;
+            while (!state.closed && (t = p.nextToken()) != null) {
+                state.on(p, t);
+            }
+        }
+        return state.sawQuestions;
+    }
+
+    /** A parser fed with text as the model produces it. */
+    public Incremental incremental(Sink sink) throws IOException {
+        return new Incremental(factory.createNonBlockingByteArrayParser(), new State(factory, sink));
+    }
+
+    public static final class Incremental {
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final State state;
+
+        private Incremental(JsonParser parser, State state) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.state = state;
+        }
+
+        public void feed(String chunk) throws IOException {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        }
+
+        /** Ends the input. Returns false if the answer had no {@code questions} array. */
+        public boolean finish() throws IOException {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+            return state.sawQuestions;
+        }
+
+        private void drain() throws IOException {
+            JsonToken t;
+            while (!state.closed && (t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+                state.on(parser, t);
+            }
+        }
+    }
+
+    /**
+     * Token handler shared by both modes. Works one token at a time and never reads ahead, so a
+     * non-blocking parser may run out of input between any two tokens.
+     * Depth 1 is the root object, 2 the questions array, 3 a question.
+     */
+    private static final class State {
+        private final JsonFactory factory;
+        private final Sink sink;
+        private int depth;
+        private boolean inQuestions;
+        private boolean sawQuestions;
+        // anything after the root value is ignored, as ObjectMapper.readTree does
+        private boolean closed;
+        private String field;
+
+        private Question current;
+        private Integer pageIndex;
+
+        // choices are copied token by token while below depth 3
+        private StringWriter choicesOut;
+        private JsonGenerator choices;
+
+        State(JsonFactory factory, Sink sink) {
+            this.factory = factory;
+            this.sink = sink;
+        }
+
+        void on(JsonParser p, JsonToken t) throws IOException {
+            if (t.isStructStart()) {
+                depth++;
+                if (choices != null) {
+                    choices.copyCurrentEvent(p);
+                } else if (depth == 2 && t == JsonToken.START_ARRAY && "questions".equals(field)) {
+                    inQuestions = true;
+                    sawQuestions = true;
+                } else if (depth == 3 && inQuestions && t == JsonToken.START_OBJECT) {
+                    current = new Question();
+                    current.setNumberLabel("");
+                    current.setStem("");
+                    current.setCategory("Other");
+                    pageIndex = null;
+                } else if (depth == 4 && current != null && "choices".equals(field)) {
+                    choicesOut = new StringWriter();
+                    choices = factory.createGenerator(choicesOut);
+                    choices.copyCurrentEvent(p);
+                }
+                field = null;
+                return;
+            }
+
+            if (t.isStructEnd()) {
+                if (choices != null) {
+                    choices.copyCurrentEvent(p);
+                    if (depth == 4) {
+                        choices.close();
+                        current.setChoicesJson(choicesOut.toString());
+                        choices = null;
+                        choicesOut = null;
+                    }
+                } else if (depth == 3 && current != null) {
+                    Question done = current;
+                    current = null;
+                    sink.accept(pageIndex, done);
+                } else if (depth == 2 && inQuestions) {
+                    inQuestions = false;
+                }
+                depth--;
+                closed = depth == 0;
+                field = null;
+                return;
+            }
+
+            if (choices != null) {
+                choices.copyCurrentEvent(p);
+                return;
+            }
+            if (t == JsonToken.FIELD_NAME) {
+                field = p.currentName();
+                return;
+            }
+            if (depth == 3 && current != null && field != null) {
+                scalar(p, t, field);
+            }
+            field = null;
+        }
+
+        private void scalar(JsonParser p, JsonToken t, String name) throws IOException {
+            boolean isNull = t == JsonToken.VALUE_NULL;
+            switch (name) {
+                case "numberLabel" -> current.setNumberLabel(isNull ? "" : p.getText());
+                case "stem" -> current.setStem(isNull ? "" : p.getText());
+                case "category" -> current.setCategory(isNull ? "Other" : p.getText());
+                case "confidence" -> current.setConfidence(p.getValueAsDouble(0.0));
+                case "needsReview" -> current.setNeedsReview(p.getValueAsBoolean(false));
+                case "reviewReason" -> current.setReviewReason(isNull ? null : p.getText());
+                case "hasFigure" -> current.setHasFigure(p.getValueAsBoolean(false));
+                case "choices" -> current.setChoicesJson(isNull ? null : copyScalar(p));
+                case "pageIndex" -> pageIndex = t == JsonToken.VALUE_NUMBER_INT
+                        && p.getNumberType() == JsonParser.NumberType.INT ? p.getIntValue() : null;
+                default -> { }
+            }
+        }
+
+        private String copyScalar(JsonParser p) throws IOException {
+            StringWriter out = new StringWriter();
+            try (JsonGenerator g = factory.createGenerator(out)) {
+                g.copyCurrentEvent(p);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.sytion06.backend.service;
+
+/** Thrown when the processing queue has no room left for another job. */
+public class QueueFullException extends RuntimeException {
+    public QueueFullException(String message) {
+        super(message);
+    }
+}
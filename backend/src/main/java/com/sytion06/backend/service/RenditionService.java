@@ -0,0 +1,184 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.service.pages.PageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Smaller variants of the rendered page PNGs for clients that only show a page at preview or
+ * thumbnail size. A variant is made on first request by scaling the master PNG down and encoding
+ * it as JPEG, then kept in a disk LRU cache ({@code storage/cache/renditions}). The cache key
+ * covers the master's ETag as well as the target width and quality, so a re-rendered page or a
+ * changed setting simply misses and the stale entry ages out.
+ */
+@Service
+public class RenditionService {
+
+    public enum Size {
+        THUMB, PREVIEW, ORIGINAL;
+
+        /** {@code null} if {@code value} is not a known size. */
+        public static Size parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /** What to send: {@code length} bytes at {@code offset} of {@code file}. */
+    public record Rendition(Path file, long offset, long length, String contentType, String etag) {}
+
+    private final PageStore pages;
+    private final DiskLruCache cache;
+    private final int thumbWidth;
+    private final int previewWidth;
+    private final float quality;
+    // one encoder per key, so concurrent first requests for the same variant do the work once
+    private final ConcurrentHashMap<String, Object> inFlight = new ConcurrentHashMap<>();
+
+    public RenditionService(PageStore pages,
+                            @Value("${qbank.renditions.thumb-width:240}") int thumbWidth,
+                            @Value("${qbank.renditions.preview-width:900}") int previewWidth,
+                            @Value("${qbank.renditions.jpeg-quality:0.8}") float quality,
+                            @Value("${qbank.renditions.max-size-mb:512}") long maxSizeMb) {
+        this.pages = pages;
+        this.thumbWidth = Math.max(16, thumbWidth);
+        this.previewWidth = Math.max(16, previewWidth);
+        this.quality = Math.min(1f, Math.max(0.1f, quality));
+        this.cache = new DiskLruCache(Paths.get("storage").resolve("cache").resolve("renditions"),
+                maxSizeMb * 1024 * 1024, ".jpg");
+    }
+
+    /** What to serve for page {@code name} at {@code size}; empty if there is no such page. */
+    public Optional<Rendition> get(UUID docId, String name, Size size) throws IOException {
+        PageStore.PageFile master = pages.find(docId, name).orElse(null);
+        if (master == null) return Optional.empty();
+        Rendition original = new Rendition(master.file(), master.offset(), master.length(), "image/png", master.etag());
+        if (size == Size.ORIGINAL) return Optional.of(original);
+
+        int width = size == Size.THUMB ? thumbWidth : previewWidth;
+        String key = key(docId, name, master.etag(), width);
+        // the cache refreshes modification times on reads, so the ETag comes from the key instead
+        String etag = "\"" + key.substring(0, 32) + "\"";
+
+        Optional<Path> cached = cache.file(key);
+        if (cached.isEmpty()) {
+            Object lock = inFlight.computeIfAbsent(key, k -> new Object());
+            try {
+                synchronized (lock) {
+                    cached = cache.file(key);
+                    if (cached.isEmpty()) {
+                        cache.put(key, encode(scale(read(docId, name), width)));
+                        cached = cache.file(key);
+                    }
+                }
+            } finally {
+                inFlight.remove(key, lock);
+            }
+        }
+        if (cached.isEmpty()) return Optional.of(original);      // a full disk: the master is still a correct answer
+        try {
+            return Optional.of(new Rendition(cached.get(), 0, Files.size(cached.get()), "image/jpeg", etag));
+        } catch (IOException evicted) {
+            return Optional.of(original);
+        }
+    }
+
+    private String key(UUID docId, String name, String masterEtag, int width) {
+        String id = docId + "|" + name + "|" + masterEtag + "|" + width + "|" + quality;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(id.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BufferedImage read(UUID docId, String name) throws IOException {
+        BufferedImage image;
+        try (InputStream in = pages.open(docId, name)) {
+            image = ImageIO.read(in);
+        }
+        if (image == null) throw new IOException("Not an image: " + name);
+        return image;
+    }
+
+    /**
+     * Halves the image until one bilinear step remains; a single bilinear step from 150 DPI down
+     * to thumbnail size skips most source pixels and makes text look jagged.
+     */
+    private static BufferedImage scale(BufferedImage src, int width) {
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        if (w <= width) return toRgb(src);
+        do {
+            int nextW = Math.max(width, w / 2);
+            int nextH = Math.max(1, (int) Math.round((double) h * nextW / w));
+            BufferedImage next = new BufferedImage(nextW, nextH, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, nextW, nextH, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            w = nextW;
+            h = nextH;
+        } while (w > width);
+        return current;
+    }
+
+    private static BufferedImage toRgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(src, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
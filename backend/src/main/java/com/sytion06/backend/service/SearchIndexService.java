@@ -0,0 +1,304 @@
+package com.sytion06.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.model.TermVector;
+import com.sytion06.backend.repo.QuestionRepository;
+import com.sytion06.backend.repo.TermVectorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Full-text search over question stems, choices and number labels. Each question's terms and
+ * their weights are stored as a {@link TermVector}, written in the same transaction as the
+ * question, so the index is never behind the bank. Terms come from {@link SearchTokenizer}; every
+ * query term must occur in a result, and results are ranked by BM25.
+ *
+ * <p>Queries run on {@link PostingLists}, the term vectors inverted in memory, and a
+ * transaction's changes are applied to them once it commits. Every question holding all query
+ * terms is scored, so rankings and totals are exact, and the cost follows the length of the
+ * rarest term's list. Commits that change the index are serialized by a lock held until the
+ * transaction ends, so the lists take changes in the order the database did. The lists are
+ * loaded in the background when the application starts (about half a minute for a million
+ * questions); the load holds the same lock, and queries wait for it to finish.
+ */
+@Service
+public class SearchIndexService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double AVERAGE_LENGTH = 60;      // terms in a typical stem plus its choices
+    private static final int NUMBER_LABEL_BOOST = 3;
+    private static final int LOAD_BATCH = 5000;
+
+    public static final class Rebuild {
+        final Instant startedAt = Instant.now();
+        volatile Instant finishedAt;
+        volatile String error;
+        final AtomicInteger documents = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger questions = new AtomicInteger();
+    }
+
+    private final TermVectorRepository vectors;
+    private final QuestionRepository questions;
+    private final TransactionTemplate tx;
+    private final ExecutorService executor;
+    private final ObjectMapper om = new ObjectMapper();
+    private final PostingLists lists = new PostingLists();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private volatile Rebuild current;
+
+    public SearchIndexService(TermVectorRepository vectors, QuestionRepository questions, TransactionTemplate tx,
+                              @Qualifier("searchIndexer") ExecutorService executor) {
+        this.vectors = vectors;
+        this.questions = questions;
+        this.tx = tx;
+        this.executor = executor;
+    }
+
+    /** Adds saved questions to the index; joins the caller's transaction. */
+    public void index(List<Question> saved) {
+        List<TermVector> added = new ArrayList<>();
+        for (Question q : saved) {
+            Map<String, Integer> tf = new HashMap<>();
+            List<String> characters = new ArrayList<>();
+            int length = 0;
+            for (String t : SearchTokenizer.tokenize(q.getStem(), characters)) {
+                tf.merge(t, 1, Integer::sum);
+                length++;
+            }
+            for (String t : SearchTokenizer.tokenize(choiceText(q.getChoicesJson()), characters)) {
+                tf.merge(t, 1, Integer::sum);
+                length++;
+            }
+            // they repeat what the bigrams hold, so they do not add to the length
+            for (String c : characters) tf.merge(c, 1, Integer::sum);
+            characters.clear();
+            for (String t : SearchTokenizer.tokenize(q.getNumberLabel(), characters)) {
+                tf.merge(t, NUMBER_LABEL_BOOST, Integer::sum);
+            }
+            for (String c : characters) tf.merge(c, NUMBER_LABEL_BOOST, Integer::sum);
+            double norm = K1 * (1 - B + B * length / AVERAGE_LENGTH);
+            Map<String, Integer> weights = new HashMap<>();
+            for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                int f = e.getValue();
+                weights.put(e.getKey(), (int) Math.round(100 * f * (K1 + 1) / (f + norm)));
+            }
+            added.add(new TermVector(q, weights));
+        }
+        vectors.saveAll(added);
+        onCommit(() -> lists.add(added));
+    }
+
+    public void removePage(UUID docId, int pageIndex) {
+        List<byte[]> removed = vectors.termsOfPage(docId, pageIndex);
+        vectors.deleteByDocumentIdAndPageIndex(docId, pageIndex);
+        onCommit(() -> lists.removePage(docId, pageIndex, removed));
+    }
+
+    public void removeDocument(UUID docId) {
+        List<byte[]> removed = vectors.termsOfDocument(docId);
+        vectors.deleteByDocumentId(docId);
+        onCommit(() -> lists.removeDocument(docId, removed));
+    }
+
+    /**
+     * Relevance-ranked matches; the sort of {@code pageable} is ignored. Not transactional: it may
+     * wait for the index to load, and should not hold a connection meanwhile.
+     */
+    public Page<Question> search(String query, String category, Pageable pageable) {
+        Set<String> queryTerms = new LinkedHashSet<>(SearchTokenizer.tokenize(query));
+        String cat = category == null || category.isBlank() ? null : category.toLowerCase(Locale.ROOT);
+        if (queryTerms.isEmpty()) return Page.empty(pageable);
+
+        awaitLoaded();
+        long offset = pageable.isUnpaged() ? 0 : pageable.getOffset();
+        int limit = pageable.isUnpaged() ? Integer.MAX_VALUE : pageable.getPageSize();
+        PostingLists.Ranked ranked = lists.rank(queryTerms, cat, offset, limit);
+
+        Map<UUID, Question> byId = new HashMap<>();
+        for (Question q : questions.findAllById(ranked.ids())) byId.put(q.getId(), q);
+        List<Question> content = ranked.ids().stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, ranked.total());
+    }
+
+    /** Rebuilds the index document by document in the background; empty if a rebuild is running. */
+    public synchronized Optional<Rebuild> rebuild() {
+        if (current != null && current.finishedAt == null) return Optional.empty();
+        Rebuild run = new Rebuild();
+        current = run;
+        executor.execute(() -> rebuildAll(run));
+        return Optional.of(run);
+    }
+
+    public Optional<Rebuild> current() {
+        return Optional.ofNullable(current);
+    }
+
+    public Map<String, Object> progress(Rebuild run) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("status", run.finishedAt == null ? "RUNNING" : run.error != null ? "FAILED" : "DONE");
+        out.put("startedAt", run.startedAt.toString());
+        out.put("finishedAt", run.finishedAt == null ? null : run.finishedAt.toString());
+        out.put("documents", run.documents.get());
+        out.put("questions", run.questions.get());
+        out.put("failedDocuments", run.failed.get());
+        out.put("lastError", run.error);
+        return out;
+    }
+
+    /** Starts loading the posting lists from the term vectors, ahead of any rebuild. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        executor.execute(this::load);
+    }
+
+    private void load() {
+        long started = System.nanoTime();
+        commitLock.lock();
+        try {
+            lists.clear();
+            UUID after = null;
+            while (true) {
+                UUID from = after;
+                List<TermVector> batch = tx.execute(status -> from == null
+                        ? vectors.findAllByOrderByQuestionIdAsc(Limit.of(LOAD_BATCH))
+                        : vectors.findByQuestionIdGreaterThanOrderByQuestionIdAsc(from, Limit.of(LOAD_BATCH)));
+                lists.add(batch);
+                if (batch.size() < LOAD_BATCH) break;
+                after = batch.get(batch.size() - 1).getQuestionId();
+            }
+            lists.trim();
+            log.info("Loaded the search index: {} questions, {} terms, {} postings in {} ms",
+                    lists.questions(), lists.terms(), lists.postings(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Loading the search index failed; searches miss what was not loaded until it is rebuilt", e);
+        } finally {
+            commitLock.unlock();
+            loaded.countDown();
+        }
+    }
+
+    private void awaitLoaded() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the search index to load", e);
+        }
+    }
+
+    /** Builds the index for questions that were saved before it existed. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissing() {
+        if (vectors.count() == 0 && questions.count() > 0) rebuild();
+    }
+
+    private void rebuildAll(Rebuild run) {
+        try {
+            for (UUID docId : questions.findDocumentIds()) {
+                try {
+                    tx.executeWithoutResult(status -> {
+                        removeDocument(docId);
+                        List<Question> qs = questions.findByDocumentIdOrderByPageIndexAsc(docId);
+                        index(qs);
+                        run.questions.addAndGet(qs.size());
+                    });
+                    run.documents.incrementAndGet();
+                } catch (Exception e) {
+                    // e.g. the document was being processed at the same moment; its pages index themselves
+                    log.warn("Search index rebuild skipped document {}", docId, e);
+                    run.failed.incrementAndGet();
+                    run.error = docId + ": " + e;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Search index rebuild failed", e);
+            run.error = e.toString();
+        } finally {
+            run.finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * Applies {@code change} to the posting lists once the current transaction commits, or now if
+     * there is none. The changes of a transaction are applied in order, under {@link #commitLock},
+     * which it takes just before committing and holds until it ends.
+     */
+    private void onCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commitLock.lock();
+            try {
+                change.run();
+            } finally {
+                commitLock.unlock();
+            }
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Runnable> pending = (List<Runnable>) TransactionSynchronizationManager.getResource(lists);
+        if (pending == null) {
+            List<Runnable> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(lists, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    commitLock.lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    changes.forEach(Runnable::run);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(lists);
+                    if (locked) commitLock.unlock();
+                }
+            });
+            pending = changes;
+        }
+        pending.add(change);
+    }
+
+    /** The choice texts of a {"A": "...", ...} object, or the raw string if it is not one. */
+    private String choiceText(String choicesJson) {
+        if (choicesJson == null || choicesJson.isBlank()) return "";
+        try {
+            JsonNode node = om.readTree(choicesJson);
+            StringBuilder sb = new StringBuilder();
+            node.elements().forEachRemaining(v -> sb.append(v.asText()).append('\n'));
+            return sb.toString();
+        } catch (Exception e) {
+            return choicesJson;
+        }
+    }
+}
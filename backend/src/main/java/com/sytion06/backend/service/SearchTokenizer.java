@@ -0,0 +1,140 @@
+package com.sytion06.backend.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits question text into search terms. Chinese (and other CJK) text has no spaces, so runs of
+ * CJK characters become overlapping character bigrams ("已知函数" -> 已知, 知函, 函数). Latin words
+ * and numbers are kept whole, and operators are terms of their own. For the index, the single
+ * characters of CJK runs are terms as well, so a one-character query (a lone CJK character is a
+ * term of its own) finds the character inside words too.
+ *
+ * <p>Before that the text is normalized so that the same formula matches however it was typed:
+ * NFKC folds full-width forms ({@code （２）＝} -> {@code (2)=}) and superscripts, common LaTeX
+ * commands and math symbols map to one spelling ({@code \le}, {@code ≤} and {@code ⩽} all become
+ * {@code <=}; {@code \sqrt} and {@code √} become {@code sqrt}), and everything is lower-cased.
+ */
+public final class SearchTokenizer {
+
+    static final int MAX_TERM_LENGTH = 24;
+
+    private static final Pattern LATEX_COMMAND = Pattern.compile("\\\\([a-z]+)");
+
+    private static final Map<String, String> LATEX = Map.ofEntries(
+            Map.entry("le", "<="), Map.entry("leq", "<="), Map.entry("leqslant", "<="),
+            Map.entry("ge", ">="), Map.entry("geq", ">="), Map.entry("geqslant", ">="),
+            Map.entry("ne", "!="), Map.entry("neq", "!="),
+            Map.entry("lt", "<"), Map.entry("gt", ">"),
+            Map.entry("times", "*"), Map.entry("cdot", "*"), Map.entry("div", "/"),
+            Map.entry("left", " "), Map.entry("right", " "), Map.entry("dfrac", " frac "), Map.entry("tfrac", " frac "));
+
+    private static final Map<Character, String> SYMBOLS = Map.ofEntries(
+            Map.entry('×', "*"), Map.entry('·', "*"), Map.entry('⋅', "*"), Map.entry('÷', "/"),
+            Map.entry('−', "-"), Map.entry('–', "-"), Map.entry('—', "-"),
+            Map.entry('≤', "<="), Map.entry('⩽', "<="), Map.entry('≥', ">="), Map.entry('⩾', ">="),
+            Map.entry('≠', "!="),
+            Map.entry('√', " sqrt "), Map.entry('π', " pi "), Map.entry('∠', " angle "),
+            Map.entry('△', " triangle "), Map.entry('°', " deg "), Map.entry('∞', " inf "),
+            Map.entry('∈', " in "), Map.entry('∪', " cup "), Map.entry('∩', " cap "),
+            Map.entry('⊆', " subseteq "), Map.entry('∥', " parallel "), Map.entry('⊥', " perp "));
+
+    private static final String OPERATORS = "=+-*/^<>!|%";
+
+    private SearchTokenizer() {}
+
+    /** Terms in order of appearance, with repeats. */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, null);
+    }
+
+    /**
+     * Like {@link #tokenize(String)}, and adds each character of the CJK runs that became bigrams
+     * to {@code characters}, with repeats; for indexing.
+     */
+    public static List<String> tokenize(String text, List<String> characters) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+
+        String s = normalize(text);
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            if (isCjk(cp)) {
+                List<String> chars = new ArrayList<>();
+                while (i < n && isCjk(s.codePointAt(i))) {
+                    int c = s.codePointAt(i);
+                    chars.add(new String(Character.toChars(c)));
+                    i += Character.charCount(c);
+                }
+                if (chars.size() == 1) {
+                    out.add(chars.get(0));
+                } else {
+                    for (int k = 0; k + 1 < chars.size(); k++) out.add(chars.get(k) + chars.get(k + 1));
+                    if (characters != null) characters.addAll(chars);
+                }
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < n) {
+                    int c = s.codePointAt(i);
+                    // keep decimals like 3.14 in one term
+                    boolean decimalPoint = c == '.' && i + 1 < n && Character.isDigit(s.charAt(i + 1))
+                            && i > start && Character.isDigit(s.charAt(i - 1));
+                    if (isCjk(c) || !(Character.isLetterOrDigit(c) || decimalPoint)) break;
+                    i += Character.charCount(c);
+                }
+                out.add(truncate(s.substring(start, i)));
+            } else if (OPERATORS.indexOf(cp) >= 0) {
+                if (i + 1 < n && s.charAt(i + 1) == '=' && "<>!".indexOf(cp) >= 0) {
+                    out.add(s.substring(i, i + 2));
+                    i += 2;
+                } else {
+                    if (cp != '!') out.add(String.valueOf((char) cp));
+                    i++;
+                }
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return out;
+    }
+
+    static String normalize(String text) {
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+
+        Matcher m = LATEX_COMMAND.matcher(s);
+        StringBuilder sb = new StringBuilder(s.length());
+        while (m.find()) {
+            String mapped = LATEX.get(m.group(1));
+            m.appendReplacement(sb, Matcher.quoteReplacement(mapped != null ? mapped : " " + m.group(1) + " "));
+        }
+        m.appendTail(sb);
+
+        StringBuilder out = new StringBuilder(sb.length());
+        for (int i = 0; i < sb.length(); i++) {
+            char c = sb.charAt(i);
+            String mapped = SYMBOLS.get(c);
+            if (mapped != null) out.append(mapped);
+            else out.append(c);
+        }
+        return out.toString();
+    }
+
+    private static String truncate(String term) {
+        return term.length() <= MAX_TERM_LENGTH ? term : term.substring(0, MAX_TERM_LENGTH);
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
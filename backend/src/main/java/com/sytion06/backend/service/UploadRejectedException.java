@@ -0,0 +1,21 @@
+package com.sytion06.backend.service;
+
+import java.io.IOException;
+
+/**
+ * An upload was refused while its bytes were arriving: not a PDF, or over the size limit. An
+ * {@link IOException} so it can surface from inside a stream that is being copied.
+ */
+public class UploadRejectedException extends IOException {
+
+    private final boolean tooLarge;
+
+    public UploadRejectedException(String message, boolean tooLarge) {
+        super(message);
+        this.tooLarge = tooLarge;
+    }
+
+    public boolean isTooLarge() {
+        return tooLarge;
+    }
+}
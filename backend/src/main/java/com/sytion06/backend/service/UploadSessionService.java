@@ -0,0 +1,243 @@
+package com.sytion06.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads. A session declares the file name and size up front; chunks are then
+ * appended in order at the offset the server reports, so after a dropped connection the client
+ * asks for the offset and continues from there. Chunks are validated as they arrive (PDF header,
+ * declared size) and hashed on the way to disk. When the last byte is in, the file becomes a
+ * document through {@link DocumentIntakeService#commit} without being copied again.
+ *
+ * <p>Sessions live in {@code storage/uploads} as a {@code .part} file plus a small JSON
+ * descriptor, so they survive a restart; after one, the hash is recomputed from the file.
+ * Sessions untouched for {@code qbank.upload.session-ttl-hours} are removed.
+ */
+@Service
+public class UploadSessionService {
+
+    /** The chunk did not start where the file currently ends. */
+    public static class OffsetMismatchException extends RuntimeException {
+        private final long offset;
+
+        public OffsetMismatchException(long offset) {
+            super("Upload is at offset " + offset);
+            this.offset = offset;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    private record Descriptor(String filename, long size, Instant createdAt) {}
+
+    public static final class Session {
+        private final UUID id;
+        private final String filename;
+        private final long size;
+        private final Path part;
+        // running hash of the bytes in the part file, or null when it has to be recomputed
+        private MessageDigest digest;
+
+        private Session(UUID id, String filename, long size, Path part, MessageDigest digest) {
+            this.id = id;
+            this.filename = filename;
+            this.size = size;
+            this.part = part;
+            this.digest = digest;
+        }
+
+        public UUID getId() { return id; }
+        public String getFilename() { return filename; }
+        public long getSize() { return size; }
+
+        public long offset() throws IOException {
+            return Files.size(part);
+        }
+    }
+
+    /** Where a session stands after a chunk; {@code result} is set once the file is complete. */
+    public record Progress(Session session, long offset, DocumentIntakeService.IntakeResult result) {}
+
+    private final Path dir = Paths.get("storage").resolve("uploads");
+    private final ObjectMapper om = new ObjectMapper().findAndRegisterModules();
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final DocumentIntakeService intake;
+    private final Duration ttl;
+
+    public UploadSessionService(DocumentIntakeService intake,
+                                @Value("${qbank.upload.session-ttl-hours:24}") int ttlHours) {
+        this.intake = intake;
+        this.ttl = Duration.ofHours(Math.max(1, ttlHours));
+    }
+
+    /**
+     * @throws UploadRejectedException if {@code size} exceeds {@code qbank.upload.max-mb}
+     * @throws IllegalArgumentException for an empty file or a name that is not a PDF
+     */
+    public Session create(String filename, long size) throws IOException {
+        if (filename == null || !filename.toLowerCase().endsWith(".pdf")) {
+            throw new IllegalArgumentException("Only PDF is supported");
+        }
+        if (size < 5) {
+            throw new IllegalArgumentException("size is too small for a PDF file");
+        }
+        if (size > intake.maxUploadBytes()) {
+            throw new UploadRejectedException("File is larger than " + intake.maxUploadBytes() / (1024 * 1024) + " MB", true);
+        }
+        Files.createDirectories(dir);
+        removeExpired();
+
+        UUID id = UUID.randomUUID();
+        Session s = new Session(id, filename, size, dir.resolve(id + ".part"), sha256());
+        Files.createFile(s.part);
+        om.writeValue(dir.resolve(id + ".json").toFile(), new Descriptor(filename, size, Instant.now()));
+        sessions.put(id, s);
+        return s;
+    }
+
+    public Optional<Session> find(UUID id) {
+        Session s = sessions.get(id);
+        if (s != null) return Optional.of(s);
+
+        // created before a restart
+        Path json = dir.resolve(id + ".json");
+        Path part = dir.resolve(id + ".part");
+        if (!Files.exists(json) || !Files.exists(part)) return Optional.empty();
+        try {
+            Descriptor d = om.readValue(json.toFile(), Descriptor.class);
+            return Optional.of(sessions.computeIfAbsent(id, k -> new Session(id, d.filename(), d.size(), part, null)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Appends one chunk at {@code offset}. Bytes received before a dropped connection are kept,
+     * so the client resumes from the returned (or queried) offset. A chunk that breaks the PDF
+     * header or runs past the declared size is discarded entirely.
+     *
+     * @throws OffsetMismatchException if {@code offset} is not where the file ends
+     * @throws UploadRejectedException not a PDF, or more bytes than declared
+     */
+    public Progress append(Session s, long offset, InputStream chunk) throws IOException {
+        synchronized (s) {
+            long current = s.offset();
+            if (offset != current) throw new OffsetMismatchException(current);
+
+            MessageDigest digest = s.digest;
+            s.digest = null;                         // stays null unless the chunk lands completely
+            try (FileChannel ch = FileChannel.open(s.part, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 OutputStream file = Channels.newOutputStream(ch);
+                 OutputStream out = digest == null ? file : new DigestOutputStream(file, digest)) {
+                new PdfUploadStream(chunk, offset, s.size, false).transferTo(out);
+            } catch (UploadRejectedException e) {
+                truncate(s.part, offset);
+                s.digest = null;
+                throw e;
+            }
+            s.digest = digest;
+            // the descriptor's time is the session's last activity (see removeExpired)
+            Files.setLastModifiedTime(dir.resolve(s.id + ".json"), FileTime.from(Instant.now()));
+
+            long end = s.offset();
+            if (end < s.size) return new Progress(s, end, null);
+            return new Progress(s, end, complete(s));
+        }
+    }
+
+    public void cancel(Session s) throws IOException {
+        synchronized (s) {
+            sessions.remove(s.id);
+            Files.deleteIfExists(s.part);
+            Files.deleteIfExists(dir.resolve(s.id + ".json"));
+        }
+    }
+
+    private DocumentIntakeService.IntakeResult complete(Session s) throws IOException {
+        String hash = HexFormat.of().formatHex(s.digest != null ? s.digest.digest() : hashFile(s.part));
+        sessions.remove(s.id);
+        Files.deleteIfExists(dir.resolve(s.id + ".json"));
+        DocumentIntakeService.StagedFile staged = new DocumentIntakeService.StagedFile(s.part, s.filename, hash, s.size);
+        return intake.commit(List.of(staged)).get(0);
+    }
+
+    /** Removes sessions whose last chunk (or creation) is older than the TTL, descriptor and part together. */
+    private void removeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                String name = f.getFileName().toString();
+                if (!name.endsWith(".json") && !name.endsWith(".part")) continue;
+                String base = name.substring(0, name.length() - 5);
+                if (lastActivity(base).isAfter(cutoff)) continue;
+                Files.deleteIfExists(f);
+                try {
+                    sessions.remove(UUID.fromString(base));
+                } catch (IllegalArgumentException ignore) {
+                    // not one of ours
+                }
+            }
+        } catch (IOException ignore) {
+            // housekeeping only
+        }
+    }
+
+    private Instant lastActivity(String base) throws IOException {
+        Instant last = Instant.EPOCH;
+        for (String ext : new String[]{".json", ".part"}) {
+            Path f = dir.resolve(base + ext);
+            if (Files.exists(f)) {
+                Instant t = Files.getLastModifiedTime(f).toInstant();
+                if (t.isAfter(last)) last = t;
+            }
+        }
+        return last;
+    }
+
+    private static void truncate(Path part, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+    }
+
+    private static byte[] hashFile(Path file) throws IOException {
+        MessageDigest md = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), md)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
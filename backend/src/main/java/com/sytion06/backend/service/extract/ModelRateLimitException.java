@@ -0,0 +1,21 @@
+package com.sytion06.backend.service.extract;
+
+import java.time.Duration;
+
+/**
+ * The model provider rejected a request for exceeding its rate limit (HTTP 429). Carries how
+ * long the provider asked us to wait; the caller pauses all model traffic for that long.
+ */
+public class ModelRateLimitException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ModelRateLimitException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
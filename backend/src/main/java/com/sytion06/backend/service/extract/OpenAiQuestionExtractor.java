@@ -0,0 +1,405 @@
+package com.sytion06.backend.service.extract;
+
+import com.openai.client.OpenAIClientAsync;
+import com.openai.client.okhttp.OpenAIOkHttpClientAsync;
+import com.openai.core.http.AsyncStreamResponse;
+import com.openai.core.http.Headers;
+import com.openai.core.http.HttpResponseFor;
+import com.openai.errors.OpenAIServiceException;
+import com.openai.models.responses.*;
+import com.sytion06.backend.model.PageMode;
+import com.sytion06.backend.service.ModelRateLimiter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Vision extraction through the OpenAI Responses API (async client). Needs {@code OPENAI_API_KEY}. */
+@Component
+@Profile("!stub")
+public class OpenAiQuestionExtractor implements QuestionExtractor {
+
+    static final String MODEL = "gpt-5.2";
+
+    /** Bump whenever the instruction or the parsing changes, so cached extractions are not reused. */
+    static final String PROMPT_VERSION = "page-v1";
+
+    private static final String INSTRUCTION =
+            "You are extracting math exam questions from ONE PAGE.\n" +
+                    "Return ONLY JSON with this schema:\n" +
+                    "{ \"questions\": [\n" +
+                    "  {\n" +
+                    "    \"numberLabel\": \"string\",\n" +
+                    "    \"stem\": \"string\",\n" +
+                    "    \"choices\": {\"A\":\"...\",\"B\":\"...\",\"C\":\"...\",\"D\":\"...\"} | null,\n" +
+                    "    \"category\": \"Algebra|Trigonometry|Geometry|Vectors|Probability|Calculus|Sequences|Functions|Set Theory|Other\",\n" +
+                    "    \"confidence\": 0.0,\n" +
+                    "    \"needsReview\": true|false,\n" +
+                    "    \"reviewReason\": \"string or null\"\n" +
+                    "    \"hasFigure\": true|false,\n" +
+                    "  }\n" +
+                    "] }\n" +
+                    "Rules:\n" +
+                    "- If the page is blurry / unreadable, set needsReview=true and lower confidence.\n" +
+                    "- Ignore solution/explanations if present.\n" +
+                    "- Keep math expressions readable in plain text (use standard symbols).\n";
+
+    private static final String BATCH_INSTRUCTION =
+            "You are extracting math exam questions from SEVERAL PAGES, each introduced by a line\n" +
+                    "\"=== pageIndex N ... ===\".\n" +
+                    "Return ONLY JSON with this schema:\n" +
+                    "{ \"questions\": [\n" +
+                    "  {\n" +
+                    "    \"pageIndex\": N (the number from the header of the page the question is on),\n" +
+                    "    \"numberLabel\": \"string\",\n" +
+                    "    \"stem\": \"string\",\n" +
+                    "    \"choices\": {\"A\":\"...\",\"B\":\"...\",\"C\":\"...\",\"D\":\"...\"} | null,\n" +
+                    "    \"category\": \"Algebra|Trigonometry|Geometry|Vectors|Probability|Calculus|Sequences|Functions|Set Theory|Other\",\n" +
+                    "    \"confidence\": 0.0,\n" +
+                    "    \"needsReview\": true|false,\n" +
+                    "    \"reviewReason\": \"string or null\",\n" +
+                    "    \"hasFigure\": true|false\n" +
+                    "  }\n" +
+                    "] }\n" +
+                    "Rules:\n" +
+                    "- A question continued across pages belongs to the page where it starts.\n" +
+                    "- If a page is blurry / unreadable, set needsReview=true and lower confidence.\n" +
+                    "- Ignore solution/explanations if present.\n" +
+                    "- Keep math expressions readable in plain text (use standard symbols).\n";
+
+    private static final String DATA_URL_PREFIX = "data:image/png;base64,";
+
+    private static final String TEXT_ONLY_NOTE =
+            "\n\nThe page contains no images or drawings (hasFigure=false). Its complete text layer:\n";
+
+    private static final int INSTRUCTION_TOKENS = INSTRUCTION.length() / 4 + 16;
+
+    // "1s", "6m0s", "250ms", "1h2m3.5s" as used by x-ratelimit-reset-*
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    // async client: a page waiting on the model holds no thread. Retries are off because the
+    // SDK would resend 429s behind the shared limiter's back; the pipeline retries instead.
+    private final OpenAIClientAsync client = OpenAIOkHttpClientAsync.builder()
+            .fromEnv()
+            .maxRetries(0)
+            .build();
+
+    private final ModelRateLimiter limiter;
+
+    public OpenAiQuestionExtractor(ModelRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String modelName() {
+        return MODEL;
+    }
+
+    @Override
+    public String promptVersion() {
+        return PROMPT_VERSION;
+    }
+
+    @Override
+    public int estimateTokens(PageInput page) {
+        int textTokens = estimateTextTokens(page.text());
+        // the answer restates the page's questions as JSON, so output scales with the text
+        int outputTokens = 300 + textTokens;
+        return INSTRUCTION_TOKENS + textTokens + estimateImageTokens(pngHeader(page.pngImage())) + outputTokens;
+    }
+
+    @Override
+    public int estimateTokens(List<PageInput> pages) {
+        // the instruction is sent once per request, not once per page
+        int sum = pages.stream().mapToInt(this::estimateTokens).sum();
+        return sum - (pages.size() - 1) * INSTRUCTION_TOKENS;
+    }
+
+    @Override
+    public CompletableFuture<String> extract(PageInput page) {
+        return send(pageMessage(page));
+    }
+
+    @Override
+    public CompletableFuture<String> extractStreaming(PageInput page, Consumer<String> onText) {
+        return stream(pageMessage(page), onText);
+    }
+
+    private static ResponseInputItem.Message pageMessage(PageInput page) {
+        ResponseInputItem.Message.Builder message = ResponseInputItem.Message.builder()
+                .role(ResponseInputItem.Message.Role.USER);
+
+        if (page.mode() == PageMode.TEXT) {
+            // clean text layer and nothing drawn: the image would add tokens and latency, not information
+            message.addContent(ResponseInputText.builder()
+                    .text(INSTRUCTION + TEXT_ONLY_NOTE + page.text())
+                    .build());
+        } else {
+            // Responses API with text + image (vision)
+            message.addContent(ResponseInputText.builder()
+                            .text(INSTRUCTION + "\n\nExtracted text (may be empty):\n" + page.text())
+                            .build())
+                    .addContent(imageOf(page));
+        }
+        return message.build();
+    }
+
+    @Override
+    public CompletableFuture<String> extractBatch(List<PageInput> pages) {
+        ResponseInputItem.Message.Builder message = ResponseInputItem.Message.builder()
+                .role(ResponseInputItem.Message.Role.USER)
+                .addContent(ResponseInputText.builder().text(BATCH_INSTRUCTION).build());
+
+        for (PageInput page : pages) {
+            if (page.mode() == PageMode.TEXT) {
+                message.addContent(ResponseInputText.builder()
+                        .text("\n=== pageIndex " + page.pageIndex() + " (no images or drawings; hasFigure=false) ===\n"
+                                + page.text())
+                        .build());
+            } else {
+                message.addContent(ResponseInputText.builder()
+                                .text("\n=== pageIndex " + page.pageIndex() + " (image follows; extracted text may be empty) ===\n"
+                                        + page.text())
+                                .build())
+                        .addContent(imageOf(page));
+            }
+        }
+        return send(message.build());
+    }
+
+    private static ResponseInputImage imageOf(PageInput page) {
+        return ResponseInputImage.builder()
+                .imageUrl(dataUrl(page.pngImage()))
+                .detail(ResponseInputImage.Detail.AUTO)
+                .build();
+    }
+
+    /**
+     * Base64 data URL encoded straight from the file: the PNG bytes are never on the heap as a
+     * whole, and there is no separate Base64 string to concatenate with the prefix.
+     */
+    static String dataUrl(Path png) {
+        try {
+            long size = Files.size(png);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) (DATA_URL_PREFIX.length() + 4 * ((size + 2) / 3)));
+            out.writeBytes(DATA_URL_PREFIX.getBytes(StandardCharsets.ISO_8859_1));
+            try (InputStream in = Files.newInputStream(png);
+                 OutputStream b64 = Base64.getEncoder().wrap(out)) {
+                in.transferTo(b64);
+            }
+            return out.toString(StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The first 24 bytes of a PNG hold its width and height; empty if unreadable. */
+    private static byte[] pngHeader(Path png) {
+        if (png == null) return new byte[0];
+        try (InputStream in = Files.newInputStream(png)) {
+            return in.readNBytes(24);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    private static ResponseCreateParams params(ResponseInputItem.Message message) {
+        List<ResponseInputItem> items = List.of(ResponseInputItem.ofMessage(message));
+
+        return ResponseCreateParams.builder()
+                .model(MODEL)
+                .inputOfResponse(items)   // ✅ convenience alias
+                .build();
+    }
+
+    private CompletableFuture<String> send(ResponseInputItem.Message message) {
+        var request = client.responses().withRawResponse().create(params(message));
+        CompletableFuture<String> out = request
+                .handle((raw, err) -> {
+                    if (err != null) throw translate(err);
+                    reportLimits(raw.headers());
+                    return outputText(raw.parse());
+                });
+        // cancelling the answer abandons the HTTP call as well
+        out.whenComplete((r, e) -> {
+            if (out.isCancelled()) request.cancel(true);
+        });
+        return out;
+    }
+
+    /**
+     * Streamed variant of {@link #send}: text deltas go to {@code onText} as they arrive. Rate-limit
+     * headers are not exposed on the stream, so only a rejected request feeds the limiter.
+     */
+    private CompletableFuture<String> stream(ResponseInputItem.Message message, Consumer<String> onText) {
+        StringBuilder text = new StringBuilder();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CompletableFuture<String> out = new CompletableFuture<>();
+
+        AsyncStreamResponse<ResponseStreamEvent> stream = client.responses().createStreaming(params(message));
+        stream.subscribe(event -> {
+            event.outputTextDelta().ifPresent(d -> {
+                text.append(d.delta());
+                onText.accept(d.delta());
+            });
+            event.error().ifPresent(e -> failure.compareAndSet(null, e.message()));
+            event.failed().ifPresent(f -> failure.compareAndSet(null,
+                    f.response().error().map(ResponseError::message).orElse("response failed")));
+        });
+        out.whenComplete((r, e) -> {
+            if (out.isCancelled()) stream.close();
+        });
+        stream.onCompleteFuture().whenComplete((v, err) -> {
+            if (err != null) {
+                out.completeExceptionally(translate(err));
+            } else if (failure.get() != null) {
+                out.completeExceptionally(new IllegalStateException("Model stream failed: " + failure.get()));
+            } else {
+                out.complete(text.toString());
+            }
+        });
+        return out;
+    }
+
+    /** Feeds the provider's remaining budget back into the shared limiter. */
+    private void reportLimits(Headers headers) {
+        limiter.onLimitsReported(
+                headerLong(headers, "x-ratelimit-remaining-requests"),
+                headerLong(headers, "x-ratelimit-remaining-tokens"),
+                parseReset(header(headers, "x-ratelimit-reset-requests")),
+                parseReset(header(headers, "x-ratelimit-reset-tokens")));
+    }
+
+    private static RuntimeException translate(Throwable err) {
+        Throwable e = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (e instanceof OpenAIServiceException se && se.statusCode() == 429) {
+            return new ModelRateLimitException("Rate limited by the model provider", retryAfter(se.headers()), se);
+        }
+        return e instanceof RuntimeException re ? re : new CompletionException(e);
+    }
+
+    /** {@code retry-after-ms}, else {@code retry-after} (seconds or HTTP date), else the token/request reset. */
+    static Duration retryAfter(Headers headers) {
+        String ms = header(headers, "retry-after-ms");
+        if (ms != null) {
+            try {
+                return Duration.ofMillis((long) Double.parseDouble(ms));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        String ra = header(headers, "retry-after");
+        if (ra != null) {
+            try {
+                return Duration.ofMillis((long) (Double.parseDouble(ra) * 1000));
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    Duration d = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(ra, DateTimeFormatter.RFC_1123_DATE_TIME));
+                    return d.isNegative() ? Duration.ZERO : d;
+                } catch (Exception ignore) {
+                }
+            }
+        }
+        Duration reset = parseReset(header(headers, "x-ratelimit-reset-requests"));
+        Duration tokenReset = parseReset(header(headers, "x-ratelimit-reset-tokens"));
+        if (reset == null || (tokenReset != null && tokenReset.compareTo(reset) > 0)) reset = tokenReset;
+        return reset != null ? reset : Duration.ofSeconds(1);
+    }
+
+    static Duration parseReset(String value) {
+        if (value == null) return null;
+        Matcher m = RESET_PART.matcher(value);
+        double ms = 0;
+        boolean any = false;
+        while (m.find()) {
+            any = true;
+            double n = Double.parseDouble(m.group(1));
+            ms += switch (m.group(2)) {
+                case "h" -> n * 3_600_000;
+                case "m" -> n * 60_000;
+                case "s" -> n * 1_000;
+                default -> n;
+            };
+        }
+        return any ? Duration.ofMillis((long) Math.ceil(ms)) : null;
+    }
+
+    private static String header(Headers headers, String name) {
+        List<String> values = headers.values(name);
+        return values.isEmpty() ? null : values.get(0).trim();
+    }
+
+    private static long headerLong(Headers headers, String name) {
+        String v = header(headers, name);
+        if (v == null) return -1;
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** About four characters per token for Latin text, about one per CJK character. */
+    static int estimateTextTokens(String text) {
+        if (text == null) return 0;
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) wide++;
+            else narrow++;
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    /**
+     * Vision cost for detail=auto/high: scale into 2048x2048, then the short side down to 768,
+     * and charge 170 tokens per 512px tile plus 85. Width and height come from the PNG header.
+     */
+    static int estimateImageTokens(byte[] png) {
+        if (png == null || png.length < 24) return 0;
+        double w = ((png[16] & 0xff) << 24) | ((png[17] & 0xff) << 16) | ((png[18] & 0xff) << 8) | (png[19] & 0xff);
+        double h = ((png[20] & 0xff) << 24) | ((png[21] & 0xff) << 16) | ((png[22] & 0xff) << 8) | (png[23] & 0xff);
+        if (w <= 0 || h <= 0) return 0;
+
+        double fit = Math.min(1.0, 2048 / Math.max(w, h));
+        w *= fit;
+        h *= fit;
+        double shortSide = Math.min(w, h);
+        if (shortSide > 768) {
+            w *= 768 / shortSide;
+            h *= 768 / shortSide;
+        }
+        int tiles = (int) (Math.ceil(w / 512) * Math.ceil(h / 512));
+        return 85 + 170 * tiles;
+    }
+
+    /** Concatenated {@code output_text} parts of the response's messages, read from the typed SDK model. */
+    static String outputText(Response response) {
+        StringBuilder sb = new StringBuilder();
+        for (ResponseOutputItem item : response.output()) {
+            item.message().ifPresent(message -> {
+                for (ResponseOutputMessage.Content content : message.content()) {
+                    content.outputText().ifPresent(t -> sb.append(t.text()));
+                }
+            });
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sytion06.backend.service.extract;
+
+import com.sytion06.backend.model.PageMode;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Everything an extractor gets to see about one page.
+ *
+ * @param mode     {@link PageMode#TEXT} pages carry no image
+ * @param text     text layer of the page (may be empty for scans)
+ * @param pngImage rendered page, a PNG file on disk; {@code null} in text mode. Passed by path so
+ *                 that queued pages hold no image bytes: the extractor reads it when it sends.
+ */
+public record PageInput(UUID documentId, int pageIndex, PageMode mode, String text, Path pngImage) {}
@@ -0,0 +1,57 @@
+package com.sytion06.backend.service.extract;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Turns one page into the question JSON the pipeline persists:
+ * <pre>{ "questions": [ { "numberLabel", "stem", "choices", "category", "confidence",
+ *   "needsReview", "reviewReason", "hasFigure" } ] }</pre>
+ * Implementations are selected by Spring profile: the OpenAI backend by default, the offline
+ * stub under the {@code stub} profile.
+ */
+public interface QuestionExtractor {
+
+    /** Model identifier; part of the extraction cache key. */
+    String modelName();
+
+    /** Version of the prompt and response contract; part of the extraction cache key. */
+    String promptVersion();
+
+    /**
+     * Rough number of tokens one request for this page costs (prompt, image and expected output),
+     * charged against the shared tokens-per-minute budget before the request is sent.
+     */
+    int estimateTokens(PageInput page);
+
+    /** Estimate for one batched request; by default the sum of the pages. */
+    default int estimateTokens(List<PageInput> pages) {
+        return pages.stream().mapToInt(this::estimateTokens).sum();
+    }
+
+    /**
+     * Starts extraction and returns the raw JSON answer for the page. Implementations must not
+     * block the calling thread while waiting on the model; a failed future is retried by the caller.
+     * A provider rate-limit rejection should fail with {@link ModelRateLimitException}.
+     */
+    CompletableFuture<String> extract(PageInput page);
+
+    /**
+     * Like {@link #extract}, but hands the answer to {@code onText} in pieces as the model
+     * produces it; the pieces concatenate to the returned answer. By default the whole answer is
+     * one piece, delivered on completion.
+     */
+    default CompletableFuture<String> extractStreaming(PageInput page, Consumer<String> onText) {
+        return extract(page).thenApply(json -> {
+            onText.accept(json);
+            return json;
+        });
+    }
+
+    /**
+     * Like {@link #extract}, for several pages in one request. Same schema, except that every
+     * question also carries the {@code pageIndex} of the page it came from.
+     */
+    CompletableFuture<String> extractBatch(List<PageInput> pages);
+}
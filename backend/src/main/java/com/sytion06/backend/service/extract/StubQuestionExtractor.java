@@ -0,0 +1,228 @@
+package com.sytion06.backend.service.extract;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline stand-in for the model, active under the {@code stub} profile. Answers are derived
+ * from the page text only, so the same page always yields the same questions; latency and
+ * failures are simulated from a seeded generator. Meant for load-testing rendering,
+ * persistence and the API without network access or an API key.
+ *
+ * <p>Latency profiles ({@code qbank.stub.latency-profile}): {@code fast}, {@code realistic},
+ * {@code slow}, {@code flaky}. Any of {@code latency-ms}, {@code jitter-ms} and
+ * {@code failure-rate} overrides the profile's value. {@code rate-limit-rate} makes that share of
+ * requests fail like a provider 429, to exercise the shared rate limiter.
+ */
+@Component
+@Profile("stub")
+public class StubQuestionExtractor implements QuestionExtractor {
+
+    private static final String[] CATEGORIES = {
+            "Algebra", "Trigonometry", "Geometry", "Vectors", "Probability",
+            "Calculus", "Sequences", "Functions", "Set Theory", "Other"
+    };
+
+    // "1." / "12、" / "3．" at the start of a line
+    private static final Pattern NUMBERED = Pattern.compile("(?m)^\\s*(\\d{1,3})\\s*[.．、]");
+    private static final Pattern CHOICE = Pattern.compile("([A-D])\\s*[.．、:：]\\s*");
+
+    private static final int INSTRUCTION_TOKENS = 1_000;
+
+    private final ObjectMapper om = new ObjectMapper();
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double failureRate;
+    private final double rateLimitRate;
+    private final int questionsPerPage;
+
+    public StubQuestionExtractor(@Value("${qbank.stub.latency-profile:realistic}") String profile,
+                                 @Value("${qbank.stub.latency-ms:-1}") long latencyMs,
+                                 @Value("${qbank.stub.jitter-ms:-1}") long jitterMs,
+                                 @Value("${qbank.stub.failure-rate:-1}") double failureRate,
+                                 @Value("${qbank.stub.rate-limit-rate:0}") double rateLimitRate,
+                                 @Value("${qbank.stub.questions-per-page:5}") int questionsPerPage,
+                                 @Value("${qbank.stub.seed:42}") long seed,
+                                 @Qualifier("modelScheduler") ScheduledExecutorService scheduler) {
+        long[] preset = switch (profile) {
+            case "fast" -> new long[]{50, 20, 0};
+            case "realistic" -> new long[]{8_000, 4_000, 2};
+            case "slow" -> new long[]{20_000, 10_000, 5};
+            case "flaky" -> new long[]{8_000, 4_000, 20};
+            default -> throw new IllegalArgumentException("Unknown qbank.stub.latency-profile: " + profile);
+        };
+        this.latencyMs = latencyMs >= 0 ? latencyMs : preset[0];
+        this.jitterMs = jitterMs >= 0 ? jitterMs : preset[1];
+        this.failureRate = failureRate >= 0 ? failureRate : preset[2] / 100.0;
+        this.rateLimitRate = Math.max(0, rateLimitRate);
+        this.questionsPerPage = Math.max(0, questionsPerPage);
+        this.random = new Random(seed);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public String modelName() {
+        return "stub";
+    }
+
+    @Override
+    public String promptVersion() {
+        return "stub-v1";
+    }
+
+    @Override
+    public int estimateTokens(PageInput page) {
+        int text = page.text() == null ? 0 : page.text().length() / 4;
+        return INSTRUCTION_TOKENS + 2 * text;
+    }
+
+    @Override
+    public int estimateTokens(List<PageInput> pages) {
+        // like the real prompt, the instruction is sent once per request
+        int sum = pages.stream().mapToInt(this::estimateTokens).sum();
+        return sum - (pages.size() - 1) * INSTRUCTION_TOKENS;
+    }
+
+    @Override
+    public CompletableFuture<String> extract(PageInput page) {
+        return simulate(List.of(page), false);
+    }
+
+    @Override
+    public CompletableFuture<String> extractBatch(List<PageInput> pages) {
+        return simulate(pages, true);
+    }
+
+    /**
+     * One simulated request. A batch pays the base latency once; half of it (the output-bound
+     * part) is paid again for every further page.
+     */
+    private CompletableFuture<String> simulate(List<PageInput> pages, boolean batched) {
+        PageInput page = pages.get(0);
+        long delay;
+        boolean fail;
+        boolean throttled;
+        synchronized (random) {
+            delay = latencyMs + (jitterMs == 0 ? 0 : (long) ((random.nextDouble() * 2 - 1) * jitterMs));
+            delay += (pages.size() - 1) * latencyMs / 2;
+            fail = random.nextDouble() < failureRate;
+            throttled = random.nextDouble() < rateLimitRate;
+        }
+
+        if (throttled) {
+            return CompletableFuture.failedFuture(new ModelRateLimitException(
+                    "Simulated rate limit on page " + (page.pageIndex() + 1), Duration.ofSeconds(1), null));
+        }
+
+        // like a real network call, the simulated latency occupies no thread
+        CompletableFuture<String> out = new CompletableFuture<>();
+        ScheduledFuture<?> answer = scheduler.schedule(() -> {
+            if (fail) {
+                out.completeExceptionally(new IllegalStateException(
+                        "Simulated model failure on page " + (page.pageIndex() + 1)));
+                return;
+            }
+            try {
+                if (!batched) {
+                    out.complete(om.writeValueAsString(answer(page)));
+                    return;
+                }
+                ObjectNode root = om.createObjectNode();
+                ArrayNode all = root.putArray("questions");
+                for (PageInput p : pages) {
+                    for (JsonNode q : answer(p).withArray("questions")) {
+                        ((ObjectNode) q).put("pageIndex", p.pageIndex());
+                        all.add(q);
+                    }
+                }
+                out.complete(om.writeValueAsString(root));
+            } catch (Exception e) {
+                out.completeExceptionally(e);
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        out.whenComplete((r, e) -> {
+            if (out.isCancelled()) answer.cancel(false);
+        });
+        return out;
+    }
+
+    private ObjectNode answer(PageInput page) {
+        ObjectNode root = om.createObjectNode();
+        ArrayNode arr = root.putArray("questions");
+
+        String text = page.text() == null ? "" : page.text();
+        List<String[]> parsed = splitNumbered(text);
+        if (parsed.isEmpty()) {
+            // scans without a text layer still produce rows, so persistence sees realistic volume
+            for (int i = 1; i <= questionsPerPage; i++) {
+                parsed.add(new String[]{String.valueOf(i), "Stub question " + i + " on page " + (page.pageIndex() + 1)});
+            }
+        }
+
+        for (String[] q : parsed) {
+            String label = q[0];
+            String body = q[1];
+            ObjectNode n = arr.addObject();
+            n.put("numberLabel", label);
+
+            Matcher m = CHOICE.matcher(body);
+            if (m.find()) {
+                n.put("stem", body.substring(0, m.start()).trim());
+                ObjectNode choices = n.putObject("choices");
+                String key = m.group(1);
+                int from = m.end();
+                while (m.find()) {
+                    choices.put(key, body.substring(from, m.start()).trim());
+                    key = m.group(1);
+                    from = m.end();
+                }
+                choices.put(key, body.substring(from).trim());
+            } else {
+                n.put("stem", body.trim());
+                n.putNull("choices");
+            }
+
+            int h = Math.floorMod((label + body).hashCode(), 1000);
+            n.put("category", CATEGORIES[h % CATEGORIES.length]);
+            n.put("confidence", 0.5 + (h % 50) / 100.0);
+            n.put("needsReview", h % 10 == 0);
+            if (h % 10 == 0) n.put("reviewReason", "stub: simulated low confidence");
+            else n.putNull("reviewReason");
+            n.put("hasFigure", h % 7 == 0);
+        }
+        return root;
+    }
+
+    private static List<String[]> splitNumbered(String text) {
+        List<String[]> out = new ArrayList<>();
+        Matcher m = NUMBERED.matcher(text);
+        String label = null;
+        int from = 0;
+        while (m.find()) {
+            if (label != null) out.add(new String[]{label, text.substring(from, m.start())});
+            label = m.group(1);
+            from = m.end();
+        }
+        if (label != null) out.add(new String[]{label, text.substring(from)});
+        return out;
+    }
+}
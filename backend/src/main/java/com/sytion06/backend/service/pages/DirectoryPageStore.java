@@ -0,0 +1,123 @@
+package com.sytion06.backend.service.pages;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/** The original layout: {@code storage/{docId}/pages/p001.png}, one file per page. */
+@Component
+@ConditionalOnProperty(name = "qbank.storage.page-store", havingValue = "directory", matchIfMissing = true)
+public class DirectoryPageStore implements PageStore {
+
+    private final Path root;
+
+    public DirectoryPageStore() {
+        this(Paths.get("storage"));
+    }
+
+    DirectoryPageStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String kind() {
+        return "directory";
+    }
+
+    private Path dir(UUID docId) {
+        return root.resolve(docId.toString()).resolve("pages");
+    }
+
+    @Override
+    public boolean contains(UUID docId, String name) {
+        return Files.exists(dir(docId).resolve(name));
+    }
+
+    @Override
+    public Path put(UUID docId, String name, Path rendered) throws IOException {
+        Path target = dir(docId).resolve(name);
+        Files.createDirectories(target.getParent());
+        Files.move(rendered, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    @Override
+    public Optional<PageFile> find(UUID docId, String name) {
+        Path file = dir(docId).resolve(name);
+        try {
+            BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!a.isRegularFile()) return Optional.empty();
+            // files are replaced atomically, never rewritten in place
+            String etag = "\"" + Long.toHexString(a.size()) + "-" + Long.toHexString(a.lastModifiedTime().toMillis()) + "\"";
+            return Optional.of(new PageFile(file, 0, a.size(), etag));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream open(UUID docId, String name) throws IOException {
+        return Files.newInputStream(dir(docId).resolve(name));
+    }
+
+    @Override
+    public Path file(UUID docId, String name, Path scratch) throws IOException {
+        Path file = dir(docId).resolve(name);
+        if (!Files.exists(file)) throw new NoSuchFileException(file.toString());
+        return file;
+    }
+
+    @Override
+    public List<String> list(UUID docId) throws IOException {
+        Path dir = dir(docId);
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".png"))
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+        }
+    }
+
+    /** Page images are immutable once rendered, so hard links are enough; copy where links are unsupported. */
+    @Override
+    public void copy(UUID sourceId, UUID targetId) throws IOException {
+        Path from = dir(sourceId);
+        if (!Files.isDirectory(from)) return;
+
+        Path to = dir(targetId);
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Path target = to.resolve(f.getFileName().toString());
+                if (Files.exists(target)) continue;
+                try {
+                    Files.createLink(target, f);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(f, target);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(UUID docId) throws IOException {
+        Path dir = dir(docId);
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(f);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+}
@@ -0,0 +1,301 @@
+package com.sytion06.backend.service.pages;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * All page images of a document in one append-only file, {@code storage/{docId}/pages.pack},
+ * plus an index {@code pages.idx} of (name, offset, length, CRC32C) records. A document costs two
+ * files instead of one per page, which keeps directory scans, backups and inode use flat as the
+ * library grows.
+ *
+ * <p>A page is appended and forced to disk before its index record is written, so a crash leaves
+ * at most unreferenced bytes at the end of the pack and a torn last index record, which is dropped
+ * on the next load. Replacing a page appends it again; the newest record wins. Reads map the
+ * page's region of the pack; HTTP responses send that region straight from the file.
+ */
+@Component
+@ConditionalOnProperty(name = "qbank.storage.page-store", havingValue = "packed")
+public class PackedPageStore implements PageStore {
+
+    private record Entry(long offset, long length, int crc) {}
+
+    /** The parsed index of one document; {@code validLength} is where the next record goes. */
+    private static final class Index {
+        final Map<String, Entry> entries = new HashMap<>();
+        long validLength;
+    }
+
+    private static final int CACHED_INDEXES = 1024;
+
+    private final Path root;
+    private final Object[] locks = new Object[64];
+    private final Map<UUID, Index> indexes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Index> eldest) {
+            return size() > CACHED_INDEXES;
+        }
+    };
+
+    public PackedPageStore() {
+        this(Paths.get("storage"));
+    }
+
+    PackedPageStore(Path root) {
+        this.root = root;
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+    }
+
+    @Override
+    public String kind() {
+        return "packed";
+    }
+
+    private Path pack(UUID docId) {
+        return root.resolve(docId.toString()).resolve("pages.pack");
+    }
+
+    private Path indexFile(UUID docId) {
+        return root.resolve(docId.toString()).resolve("pages.idx");
+    }
+
+    private Object lock(UUID docId) {
+        return locks[Math.floorMod(docId.hashCode(), locks.length)];
+    }
+
+    @Override
+    public boolean contains(UUID docId, String name) throws IOException {
+        synchronized (lock(docId)) {
+            return index(docId).entries.containsKey(name);
+        }
+    }
+
+    @Override
+    public Path put(UUID docId, String name, Path rendered) throws IOException {
+        synchronized (lock(docId)) {
+            Index index = index(docId);
+            Path pack = pack(docId);
+            Files.createDirectories(pack.getParent());
+            unshare(pack);
+
+            CRC32C crc = new CRC32C();
+            long offset;
+            long length;
+            try (FileChannel out = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileChannel in = FileChannel.open(rendered, StandardOpenOption.READ)) {
+                offset = out.size();
+                out.position(offset);
+                ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+                while (in.read(buf) >= 0) {
+                    buf.flip();
+                    crc.update(buf.duplicate());
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                }
+                length = out.position() - offset;
+                out.force(false);
+            }
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+            try (DataOutputStream d = new DataOutputStream(record)) {
+                d.writeUTF(name);
+                d.writeLong(offset);
+                d.writeLong(length);
+                d.writeInt((int) crc.getValue());
+            }
+            try (FileChannel idx = FileChannel.open(indexFile(docId), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                idx.truncate(index.validLength);        // a torn record from an earlier crash
+                idx.position(index.validLength);
+                ByteBuffer buf = ByteBuffer.wrap(record.toByteArray());
+                while (buf.hasRemaining()) idx.write(buf);
+                idx.force(false);
+            }
+            index.validLength += record.size();
+            index.entries.put(name, new Entry(offset, length, (int) crc.getValue()));
+        }
+        return rendered;
+    }
+
+    @Override
+    public Optional<PageFile> find(UUID docId, String name) throws IOException {
+        Entry e;
+        synchronized (lock(docId)) {
+            e = index(docId).entries.get(name);
+        }
+        if (e == null) return Optional.empty();
+        String etag = "\"" + Integer.toHexString(e.crc()) + "-" + Long.toHexString(e.length()) + "\"";
+        return Optional.of(new PageFile(pack(docId), e.offset(), e.length(), etag));
+    }
+
+    @Override
+    public InputStream open(UUID docId, String name) throws IOException {
+        Entry e = entry(docId, name);
+        try (FileChannel ch = FileChannel.open(pack(docId), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new MappedInputStream(ch.map(FileChannel.MapMode.READ_ONLY, e.offset(), e.length()));
+        }
+    }
+
+    @Override
+    public Path file(UUID docId, String name, Path scratch) throws IOException {
+        Entry e = entry(docId, name);
+        Files.createDirectories(scratch.getParent());
+        try (FileChannel in = FileChannel.open(pack(docId), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(scratch, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = 0;
+            while (pos < e.length()) {
+                pos += in.transferTo(e.offset() + pos, e.length() - pos, out);
+            }
+        }
+        return scratch;
+    }
+
+    @Override
+    public List<String> list(UUID docId) throws IOException {
+        synchronized (lock(docId)) {
+            return index(docId).entries.keySet().stream().sorted().toList();
+        }
+    }
+
+    /**
+     * The pack is hard-linked rather than copied; the first append to a shared pack copies it
+     * (see {@link #unshare}). The index is small and always copied.
+     */
+    @Override
+    public void copy(UUID sourceId, UUID targetId) throws IOException {
+        synchronized (lock(sourceId)) {
+            synchronized (lock(targetId)) {
+                Path fromIndex = indexFile(sourceId);
+                if (!Files.exists(fromIndex) || Files.exists(indexFile(targetId))) return;
+
+                Path to = pack(targetId);
+                Files.createDirectories(to.getParent());
+                try {
+                    Files.createLink(to, pack(sourceId));
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(pack(sourceId), to, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.copy(fromIndex, indexFile(targetId));
+                synchronized (indexes) {
+                    indexes.remove(targetId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void delete(UUID docId) throws IOException {
+        synchronized (lock(docId)) {
+            synchronized (indexes) {
+                indexes.remove(docId);
+            }
+            Files.deleteIfExists(indexFile(docId));
+            Files.deleteIfExists(pack(docId));
+        }
+    }
+
+    private Entry entry(UUID docId, String name) throws IOException {
+        synchronized (lock(docId)) {
+            Entry e = index(docId).entries.get(name);
+            if (e == null) throw new NoSuchFileException(pack(docId) + "!" + name);
+            return e;
+        }
+    }
+
+    /** Caller holds {@code lock(docId)}. */
+    private Index index(UUID docId) throws IOException {
+        synchronized (indexes) {
+            Index cached = indexes.get(docId);
+            if (cached != null) return cached;
+        }
+        Index index = load(docId);
+        synchronized (indexes) {
+            indexes.put(docId, index);
+        }
+        return index;
+    }
+
+    private Index load(UUID docId) throws IOException {
+        Index index = new Index();
+        Path file = indexFile(docId);
+        if (!Files.exists(file)) return index;
+
+        long packSize = Files.exists(pack(docId)) ? Files.size(pack(docId)) : 0;
+        byte[] bytes = Files.readAllBytes(file);
+        ByteArrayInputStream raw = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(raw);
+        try {
+            while (raw.available() > 0) {
+                String name = in.readUTF();
+                long offset = in.readLong();
+                long length = in.readLong();
+                int crc = in.readInt();
+                index.validLength = bytes.length - raw.available();
+                if (offset + length <= packSize) {
+                    index.entries.put(name, new Entry(offset, length, crc));
+                }
+            }
+        } catch (EOFException torn) {
+            // the last record was cut short; it is overwritten by the next put
+        }
+        return index;
+    }
+
+    /** Copy-on-write for packs shared with a deduplicated document. */
+    private static void unshare(Path pack) throws IOException {
+        if (!Files.exists(pack)) return;
+        int links;
+        try {
+            links = (Integer) Files.getAttribute(pack, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return;                                     // no hard links were made on such systems
+        }
+        if (links <= 1) return;
+        Path tmp = pack.resolveSibling(pack.getFileName() + ".part");
+        Files.copy(pack, tmp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, pack, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class MappedInputStream extends InputStream {
+        private final MappedByteBuffer buf;
+
+        MappedInputStream(MappedByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sytion06.backend.service.pages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where rendered page images live. Pages are written once per name ({@code p001.png}, ...) and
+ * only ever replaced as a whole, so readers may cache whatever they get. Selected with
+ * {@code qbank.storage.page-store}: {@code directory} (one file per page) or {@code packed}
+ * (one append-only file per document).
+ */
+public interface PageStore {
+
+    /** A page's bytes: {@code length} bytes at {@code offset} of {@code file}; {@code etag} is quoted. */
+    record PageFile(Path file, long offset, long length, String etag) {}
+
+    String kind();
+
+    boolean contains(UUID docId, String name) throws IOException;
+
+    /**
+     * Stores the PNG in {@code rendered} as page {@code name}, replacing any previous one.
+     *
+     * @return a standalone file holding the page, for callers that need a path (the model
+     *         request, the extraction cache): the stored file itself, or {@code rendered} when
+     *         the store keeps its own copy, in which case the caller deletes it when done
+     */
+    Path put(UUID docId, String name, Path rendered) throws IOException;
+
+    Optional<PageFile> find(UUID docId, String name) throws IOException;
+
+    /** @throws java.nio.file.NoSuchFileException if there is no such page */
+    InputStream open(UUID docId, String name) throws IOException;
+
+    /** A standalone file holding the page; stores without one copy it to {@code scratch}. */
+    Path file(UUID docId, String name, Path scratch) throws IOException;
+
+    /** Page names of a document, in order. */
+    List<String> list(UUID docId) throws IOException;
+
+    /** Gives {@code targetId} the pages of {@code sourceId} (deduplicated uploads). */
+    void copy(UUID sourceId, UUID targetId) throws IOException;
+
+    void delete(UUID docId) throws IOException;
+}
@@ -0,0 +1,153 @@
+package com.sytion06.backend.service.pages;
+
+import com.sytion06.backend.service.ProcessingJobService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves page images written in the other layout into the configured {@link PageStore}: after
+ * switching {@code qbank.storage.page-store} to {@code packed}, existing {@code pages/} folders
+ * become packs, and switching back to {@code directory} unpacks them again. A document is
+ * converted completely before its old copy is deleted, so a migration can be stopped and
+ * simply started again. Documents that are being processed are skipped; run it again later.
+ */
+@Service
+public class PageStoreMigration {
+
+    private static final int MAX_ERRORS = 20;
+
+    public static final class Run {
+        final Instant startedAt = Instant.now();
+        volatile Instant finishedAt;
+        final String from;
+        final String to;
+        final AtomicInteger documents = new AtomicInteger();
+        final AtomicInteger migrated = new AtomicInteger();
+        final AtomicInteger busy = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger pages = new AtomicInteger();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Run(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private final Path root = Paths.get("storage");
+    private final PageStore store;
+    private final PageStore other;
+    private final ProcessingJobService jobs;
+    private final ExecutorService executor;
+    private volatile Run current;
+
+    public PageStoreMigration(PageStore store, ProcessingJobService jobs,
+                              @Qualifier("storageMigrator") ExecutorService executor) {
+        this.store = store;
+        this.other = store instanceof PackedPageStore ? new DirectoryPageStore(root) : new PackedPageStore(root);
+        this.jobs = jobs;
+        this.executor = executor;
+    }
+
+    public PageStore store() {
+        return store;
+    }
+
+    /** Starts a migration in the background; empty if one is already running. */
+    public synchronized Optional<Run> start() {
+        if (current != null && current.finishedAt == null) return Optional.empty();
+        Run run = new Run(other.kind(), store.kind());
+        current = run;
+        executor.execute(() -> migrateAll(run));
+        return Optional.of(run);
+    }
+
+    public Optional<Run> current() {
+        return Optional.ofNullable(current);
+    }
+
+    public Map<String, Object> progress(Run run) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("from", run.from);
+        out.put("to", run.to);
+        out.put("status", run.finishedAt == null ? "RUNNING" : "DONE");
+        out.put("startedAt", run.startedAt.toString());
+        out.put("finishedAt", run.finishedAt == null ? null : run.finishedAt.toString());
+        out.put("documentsScanned", run.documents.get());
+        out.put("documentsMigrated", run.migrated.get());
+        out.put("documentsBusy", run.busy.get());
+        out.put("documentsFailed", run.failed.get());
+        out.put("pagesMoved", run.pages.get());
+        synchronized (run.errors) {
+            out.put("errors", List.copyOf(run.errors));
+        }
+        return out;
+    }
+
+    private void migrateAll(Run run) {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                UUID docId;
+                try {
+                    docId = UUID.fromString(dir.getFileName().toString());
+                } catch (IllegalArgumentException notADocument) {
+                    continue;                           // cache/, uploads/, ...
+                }
+                run.documents.incrementAndGet();
+                try {
+                    if (jobs.isActive(docId)) {
+                        run.busy.incrementAndGet();
+                    } else if (migrate(docId, run)) {
+                        run.migrated.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    run.failed.incrementAndGet();
+                    synchronized (run.errors) {
+                        if (run.errors.size() < MAX_ERRORS) run.errors.add(docId + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            run.errors.add(e.getMessage());
+        } finally {
+            run.finishedAt = Instant.now();
+        }
+    }
+
+    private boolean migrate(UUID docId, Run run) throws IOException {
+        List<String> names = other.list(docId);
+        if (names.isEmpty()) return false;
+
+        Path scratch = root.resolve(docId.toString()).resolve("migrate");
+        try {
+            for (String name : names) {
+                if (store.contains(docId, name)) continue;
+                Path page = other.file(docId, name, scratch.resolve(name));
+                store.put(docId, name, page);
+                run.pages.incrementAndGet();
+            }
+            if (!new HashSet<>(store.list(docId)).containsAll(names)) {
+                throw new IOException("pages missing after migration; old copy kept");
+            }
+            other.delete(docId);
+        } finally {
+            if (Files.isDirectory(scratch)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(scratch)) {
+                    for (Path f : files) Files.deleteIfExists(f);
+                }
+                Files.deleteIfExists(scratch);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.sytion06.backend;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** PDFs generated for tests and benchmarks. */
+public final class TestPdfs {
+
+    private TestPdfs() {}
+
+    /**
+     * A born-digital exam: {@code pages} A4 pages of {@code questionsPerPage} numbered multiple-choice
+     * questions each, in a standard font, so every page takes the text-only path.
+     */
+    public static void exam(Path out, int pages, int questionsPerPage) throws IOException {
+        try (PDDocument pdf = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            int n = 1;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                pdf.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(pdf, page)) {
+                    cs.beginText();
+                    cs.setFont(font, 11);
+                    cs.setLeading(16);
+                    cs.newLineAtOffset(50, 780);
+                    for (int q = 0; q < questionsPerPage; q++, n++) {
+                        cs.showText(n + ". Let f(x) = x^2 - " + n + "x + " + (n % 7) + ". Find the minimum value of f(x) on [0, " + n + "].");
+                        cs.newLine();
+                        cs.showText("A. " + (-n) + "   B. " + (n % 7) + "   C. " + (n * n / 4) + "   D. " + (n % 7 - n * n / 4));
+                        cs.newLine();
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            pdf.save(out.toFile());
+        }
+    }
+
+    /**
+     * A scanned book: {@code pages} A4 pages, each a full-page 300 DPI colour JPEG (2480 x 3508) with
+     * no text layer. The pages share the same JPEG bytes but each has its own image object, so each
+     * is decoded on its own, to about 26 MB of pixels.
+     */
+    public static void scannedBook(Path out, int pages) throws IOException {
+        BufferedImage scan = new BufferedImage(2480, 3508, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(13);
+        Graphics2D g = scan.createGraphics();
+        try {
+            g.setColor(new Color(245, 242, 232));
+            g.fillRect(0, 0, scan.getWidth(), scan.getHeight());
+            // lines of "print": dark strokes of random length
+            g.setColor(new Color(40, 40, 40));
+            for (int y = 300; y < 3300; y += 70) {
+                for (int x = 200; x < 2200; ) {
+                    int w = 40 + random.nextInt(160);
+                    g.fillRect(x, y, Math.min(w, 2280 - x), 34);
+                    x += w + 30;
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(scan, "jpeg", jpeg);
+        byte[] bytes = jpeg.toByteArray();
+
+        try (PDDocument pdf = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                pdf.addPage(page);
+                PDImageXObject image = JPEGFactory.createFromByteArray(pdf, bytes);
+                try (PDPageContentStream cs = new PDPageContentStream(pdf, page)) {
+                    cs.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+            pdf.save(out.toFile());
+        }
+    }
+}
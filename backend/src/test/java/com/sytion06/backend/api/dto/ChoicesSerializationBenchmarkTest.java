@@ -0,0 +1,93 @@
+package com.sytion06.backend.api.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sytion06.backend.model.ChoicesJson;
+import com.sytion06.backend.model.Question;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cost of writing out 1,000 questions with four choices each, before and after choices were kept
+ * in {@link ChoicesJson}'s stored form: parsing every row's choices into a map that Jackson then
+ * writes back (as the removed parseChoices did), against embedding the stored text with
+ * {@link QuestionDto}'s {@code @JsonRawValue}.
+ */
+@Tag("benchmark")
+class ChoicesSerializationBenchmarkTest {
+
+    private static final int QUESTIONS = 1_000;
+    private static final int ROUNDS = 10;
+    private static final int ITERATIONS = 200;
+    private static final TypeReference<Map<String, String>> CHOICES = new TypeReference<>() {};
+
+    /** {@link QuestionDto} as it was, with the choices parsed into a map. */
+    record ParsedQuestionDto(UUID id, UUID documentId, int pageIndex, String numberLabel, String stem,
+                             Map<String, String> choices, String category, double confidence,
+                             boolean needsReview, String reviewReason, boolean hasFigure, String pageImageUrl) {}
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    void parsedAgainstRaw() throws Exception {
+        List<Question> questions = questions();
+
+        System.out.printf("%n%d questions, %d choices each; ms per %d questions%n", QUESTIONS, 4, QUESTIONS);
+        System.out.printf("%-8s %12s %12s%n", "round", "parsed", "raw");
+        byte[] parsed = null, raw = null;
+        for (int round = 1; round <= ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) parsed = om.writeValueAsBytes(parsed(questions));
+            long t1 = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) raw = om.writeValueAsBytes(raw(questions));
+            long t2 = System.nanoTime();
+            System.out.printf("%-8d %12.2f %12.2f%n", round, (t1 - t0) / 1e6 / ITERATIONS, (t2 - t1) / 1e6 / ITERATIONS);
+        }
+
+        // same response either way
+        assertThat(om.readTree(raw)).isEqualTo(om.readTree(parsed));
+    }
+
+    private List<ParsedQuestionDto> parsed(List<Question> questions) throws Exception {
+        List<ParsedQuestionDto> out = new ArrayList<>(questions.size());
+        for (Question q : questions) {
+            out.add(new ParsedQuestionDto(q.getId(), q.getDocumentId(), q.getPageIndex(), q.getNumberLabel(),
+                    q.getStem(), om.readValue(q.getChoicesJson(), CHOICES), q.getCategory(), q.getConfidence(),
+                    q.isNeedsReview(), q.getReviewReason(), q.isHasFigure(), null));
+        }
+        return out;
+    }
+
+    private static List<QuestionDto> raw(List<Question> questions) {
+        List<QuestionDto> out = new ArrayList<>(questions.size());
+        for (Question q : questions) out.add(QuestionDto.from(q, null));
+        return out;
+    }
+
+    private List<Question> questions() throws Exception {
+        Random random = new Random(1);
+        UUID docId = UUID.randomUUID();
+        List<Question> out = new ArrayList<>();
+        for (int i = 0; i < QUESTIONS; i++) {
+            Map<String, String> choices = new LinkedHashMap<>();
+            for (String key : List.of("A", "B", "C", "D")) {
+                choices.put(key, "$x^2+" + random.nextInt(100) + "x-" + random.nextInt(9) + "=0$ 的解为 " + random.nextInt(50));
+            }
+            Question q = new Question();
+            q.setId(UUID.randomUUID());
+            q.setDocumentId(docId);
+            q.setPageIndex(i / 10);
+            q.setNumberLabel(String.valueOf(i % 10 + 1));
+            q.setStem("已知函数 f(x)=x^2-2x+3，求 f(2) 的值。题目编号 " + i);
+            q.setChoicesJson(ChoicesJson.normalize(om.writeValueAsString(choices)));
+            q.setCategory("functions");
+            q.setConfidence(0.9);
+            out.add(q);
+        }
+        return out;
+    }
+}
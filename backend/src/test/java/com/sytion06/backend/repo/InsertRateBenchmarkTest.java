@@ -0,0 +1,100 @@
+package com.sytion06.backend.repo;
+
+import com.sytion06.backend.BackendApplication;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.model.TimeOrderedUuid;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Question insert rate with and without JDBC batching ({@code hibernate.jdbc.batch_size}) and
+ * with time-ordered (v7) against random (v4) keys. Each combination gets a fresh file database;
+ * questions are written a page (one transaction) at a time, as a processing run commits them.
+ */
+@Tag("benchmark")
+class InsertRateBenchmarkTest {
+
+    private static final int WARMUP = 1_000;
+    private static final int QUESTIONS = 5_000;
+    private static final int PER_PAGE = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void batchingAndKeyOrder() {
+        System.out.printf("%n%d questions, %d per transaction%n", QUESTIONS, PER_PAGE);
+        System.out.printf("%-12s %-10s %14s%n", "batch_size", "keys", "questions/s");
+        for (int batchSize : new int[]{0, 50}) {
+            for (boolean timeOrdered : new boolean[]{false, true}) {
+                double rate = insertRate(batchSize, timeOrdered);
+                System.out.printf("%-12d %-10s %14.0f%n", batchSize, timeOrdered ? "v7" : "v4", rate);
+            }
+        }
+    }
+
+    private double insertRate(int batchSize, boolean timeOrdered) {
+        String db = dir.resolve("insert-" + batchSize + "-" + timeOrdered).toString();
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("stub")
+                // as arguments, so they override application.yml
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        "--spring.datasource.url=jdbc:h2:file:" + db,
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize)) {
+            EntityManagerFactory emf = app.getBean(EntityManagerFactory.class);
+            Supplier<UUID> ids = timeOrdered ? TimeOrderedUuid::next : UUID::randomUUID;
+            UUID docId = UUID.randomUUID();
+
+            insert(emf, docId, ids, WARMUP);
+            long started = System.nanoTime();
+            insert(emf, docId, ids, QUESTIONS);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            long rows = app.getBean(QuestionRepository.class).count();
+            assertThat(rows).isEqualTo(WARMUP + QUESTIONS);
+            return QUESTIONS / seconds;
+        }
+    }
+
+    private static void insert(EntityManagerFactory emf, UUID docId, Supplier<UUID> ids, int count) {
+        for (int page = 0; page * PER_PAGE < count; page++) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                for (int i = 0; i < PER_PAGE && page * PER_PAGE + i < count; i++) {
+                    em.persist(question(ids.get(), docId, page, i));
+                }
+                em.getTransaction().commit();
+            } finally {
+                em.close();
+            }
+        }
+    }
+
+    private static Question question(UUID id, UUID docId, int page, int i) {
+        Question q = new Question();
+        q.setId(id);
+        q.setDocumentId(docId);
+        q.setPageIndex(page);
+        q.setNumberLabel(String.valueOf(i + 1));
+        q.setStem("Question " + (i + 1) + " on page " + (page + 1) + ": which of the following is equal to "
+                + (i + 2) + "x + " + (page + 3) + " when x = " + i + "?");
+        q.setChoicesJson("{\"A\":\"" + i + "\",\"B\":\"" + (i + 1) + "\",\"C\":\"" + (i + 2) + "\",\"D\":\"" + (i + 3) + "\"}");
+        q.setCategory(i % 2 == 0 ? "algebra" : "geometry");
+        q.setConfidence(0.9);
+        return q;
+    }
+}
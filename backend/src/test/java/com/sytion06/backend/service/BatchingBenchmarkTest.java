@@ -0,0 +1,91 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.BackendApplication;
+import com.sytion06.backend.TestPdfs;
+import com.sytion06.backend.model.Document;
+import com.sytion06.backend.repo.DocumentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end comparison of per-page and batched model requests: the same generated exam is
+ * processed once in each mode and the run stats (storage/{id}/logs/run_*.txt) are printed side by
+ * side. The model is the stub extractor, so latency is its simulation (a fixed cost per request
+ * plus half of it for every further page in a batch); token counts use the same estimates as
+ * with the real model, where the instruction is sent once per request.
+ */
+@Tag("benchmark")
+class BatchingBenchmarkTest {
+
+    private static final int PAGES = 40;
+    private static final int QUESTIONS_PER_PAGE = 6;
+
+    @Test
+    void perPageAgainstBatched() throws Exception {
+        Path pdf = Files.createTempFile("exam", ".pdf");
+        try {
+            TestPdfs.exam(pdf, PAGES, QUESTIONS_PER_PAGE);
+            Map<String, String> perPage = process(pdf, false);
+            Map<String, String> batched = process(pdf, true);
+
+            System.out.printf("%n%d text pages, %d questions each%n", PAGES, QUESTIONS_PER_PAGE);
+            System.out.printf("%-20s %12s %12s%n", "", "per page", "batched");
+            for (String key : new String[]{"requests", "batchFallbacks", "estimatedTokens", "questionsPersisted", "elapsedMs"}) {
+                System.out.printf("%-20s %12s %12s%n", key, perPage.get(key), batched.get(key));
+            }
+
+            assertThat(batched.get("questionsPersisted")).isEqualTo(perPage.get("questionsPersisted"));
+            assertThat(Integer.parseInt(batched.get("requests"))).isLessThan(Integer.parseInt(perPage.get("requests")));
+        } finally {
+            Files.deleteIfExists(pdf);
+        }
+    }
+
+    /** Processes {@code pdf} in a fresh application and returns its run stats. */
+    private static Map<String, String> process(Path pdf, boolean batch) throws Exception {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("stub")
+                // as arguments, so they override application.yml
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:batching-" + batch + ";DB_CLOSE_DELAY=-1",
+                        "--qbank.cache.extraction.enabled=false",
+                        "--qbank.stub.latency-ms=400",
+                        "--qbank.stub.jitter-ms=100",
+                        "--qbank.stub.failure-rate=0",
+                        "--qbank.processing.batch.enabled=" + batch)) {
+            Document doc = new Document();
+            doc.setFilename("exam.pdf");
+            doc = app.getBean(DocumentRepository.class).save(doc);
+            Path storage = Paths.get("storage");
+            Files.createDirectories(storage);
+            Files.copy(pdf, storage.resolve(doc.getId() + ".pdf"));
+
+            app.getBean(DocumentProcessingService.class).process(doc.getId(), true);
+            return runStats(storage.resolve(doc.getId().toString()).resolve("logs"));
+        }
+    }
+
+    private static Map<String, String> runStats(Path logs) throws Exception {
+        Map<String, String> out = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(logs, "run_*.txt")) {
+            for (Path f : files) {
+                for (String line : Files.readAllLines(f)) {
+                    int colon = line.indexOf(": ");
+                    if (colon > 0) out.put(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return out;
+    }
+}
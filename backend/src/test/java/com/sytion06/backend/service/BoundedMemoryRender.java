@@ -0,0 +1,42 @@
+package com.sytion06.backend.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Main class of the JVM that {@link BoundedMemoryTest} starts with a small heap: opens a PDF,
+ * reads its text layer and renders every page to PNG the way a processing run does.
+ * Arguments: the PDF, a scratch directory and whether to use bounded-memory mode.
+ */
+public class BoundedMemoryRender {
+
+    public static void main(String[] args) throws Exception {
+        Path pdfPath = Path.of(args[0]);
+        Path scratch = Path.of(args[1]);
+        boolean bounded = Boolean.parseBoolean(args[2]);
+
+        int rendered = 0;
+        try (PDDocument pdf = PageRasterizer.open(pdfPath, bounded)) {
+            PageRasterizer rasterizer = new PageRasterizer(pdf, 150, bounded);
+            List<PageTextStripper.PageText> texts = new PageTextStripper().extract(pdf, text -> false);
+            for (int i = 0; i < texts.size(); i++) {
+                Path png = scratch.resolve(String.format("p%03d.png", i + 1));
+                rasterizer.render(i, png);
+                Files.delete(png);
+                rendered++;
+            }
+        }
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        System.out.println("rendered " + rendered + " pages, peak heap " + peak / (1024 * 1024) + " MB");
+    }
+}
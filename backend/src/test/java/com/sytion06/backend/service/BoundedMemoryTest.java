@@ -0,0 +1,71 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.TestPdfs;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Renders a generated book of 300 DPI scans (about 0.45 MB of JPEG per page, 26 MB once decoded)
+ * in a JVM with a 64 MB heap. At 200 pages the file is about 90 MB, larger than the heap, so the
+ * bounded run shows memory staying flat as the document grows. With
+ * {@code qbank.processing.memory.bounded} every page must get through; without it the first page
+ * already runs out of memory, which shows the heap is small enough for the test to mean something.
+ */
+class BoundedMemoryTest {
+
+    private static final int PAGES = 200;
+    private static final int HEAP_MB = 64;
+
+    @TempDir
+    static Path dir;
+    private static Path book;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        book = dir.resolve("book.pdf");
+        TestPdfs.scannedBook(book, PAGES);
+        assertThat(Files.size(book)).as("book size").isGreaterThan(HEAP_MB * 1024L * 1024);
+    }
+
+    @Test
+    void boundedModeRendersEveryPage() throws Exception {
+        Result r = render(true);
+        assertThat(r.exitCode).as(r.output).isZero();
+        assertThat(r.output).contains("rendered " + PAGES + " pages");
+    }
+
+    @Test
+    void unboundedModeRunsOutOfMemory() throws Exception {
+        Result r = render(false);
+        assertThat(r.exitCode).isNotZero();
+        assertThat(r.output).contains("OutOfMemoryError");
+    }
+
+    private record Result(int exitCode, String output) {}
+
+    private static Result render(boolean bounded) throws Exception {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Path out = dir.resolve("render-" + bounded + ".log");
+        Process p = new ProcessBuilder(List.of(java.toString(), "-Xmx" + HEAP_MB + "m", "-Djava.awt.headless=true",
+                "-cp", System.getProperty("java.class.path"),
+                BoundedMemoryRender.class.getName(), book.toString(), dir.toString(), String.valueOf(bounded)))
+                .redirectErrorStream(true)
+                .redirectOutput(out.toFile())
+                .start();
+        if (!p.waitFor(5, TimeUnit.MINUTES)) {
+            p.destroyForcibly();
+            throw new AssertionError("render did not finish in 5 minutes");
+        }
+        return new Result(p.exitValue(), Files.readString(out, StandardCharsets.UTF_8));
+    }
+}
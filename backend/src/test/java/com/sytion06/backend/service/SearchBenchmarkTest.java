@@ -0,0 +1,188 @@
+package com.sytion06.backend.service;
+
+import com.sytion06.backend.BackendApplication;
+import com.sytion06.backend.model.Question;
+import com.sytion06.backend.repo.QuestionRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Search latency over a bank of {@value #QUESTIONS} generated questions: Chinese stems built
+ * from a few dozen stock phrases plus words drawn with a Zipf distribution from a synthetic
+ * vocabulary, a formula, and four choices. The bank is written through {@link SearchIndexService}
+ * like processed pages are, into {@code build/benchmark/search-bank}, and reused by later runs;
+ * the first run takes a while to fill it, and later ones show how long the index takes to load
+ * into memory at startup. Each query runs for the first page of 20, and the median and 90th
+ * percentile of {@value #RUNS} runs are printed with the total it reports.
+ */
+@Tag("benchmark")
+class SearchBenchmarkTest {
+
+    private static final int QUESTIONS = 1_000_000;
+    private static final int BATCH = 2_000;
+    private static final int RUNS = 30;
+    private static final String[] CATEGORIES = {"algebra", "functions", "geometry", "trigonometry",
+            "sequences", "probability", "vectors", "calculus"};
+    private static final String[] PHRASES = {"已知函数", "如图所示", "在三角形ABC中", "下列说法正确的是", "求证",
+            "设集合", "若实数满足", "已知数列的前n项和", "则下列结论中正确的是", "的取值范围是", "求函数的最小值",
+            "抛物线的焦点", "椭圆的离心率", "向量的夹角", "一个袋子中有", "随机抽取", "概率为", "的导数",
+            "在区间上单调递增", "直线与圆相切", "正方体的棱长为", "等差数列", "等比数列的公比", "复数的虚部",
+            "不等式的解集", "求面积", "的对称轴", "已知角的终边", "计算", "化简"};
+    private static final String CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发"
+            + "年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体"
+            + "制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原"
+            + "又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总";
+
+    private final List<String> vocabulary = new ArrayList<>();
+    private double[] zipf;
+
+    @Test
+    void searchAtScale() {
+        buildVocabulary();
+        Path db = Paths.get("search-bank").toAbsolutePath();
+        long starting = System.nanoTime();
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("stub")
+                // as arguments, so they override application.yml
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        // no repeated query is answered from H2's result cache
+                        "--spring.datasource.url=jdbc:h2:file:" + db + "/qbank;QUERY_CACHE_SIZE=0")) {
+            QuestionRepository questions = app.getBean(QuestionRepository.class);
+            SearchIndexService search = app.getBean(SearchIndexService.class);
+            long existing = questions.count();
+            double startup = (System.nanoTime() - starting) / 1e9;
+            search.search("函数", null, PageRequest.of(0, 1));      // waits for the index to load
+            System.out.printf("%n%,d questions in the bank: started in %.1f s, search index loaded after %.1f s%n",
+                    existing, startup, (System.nanoTime() - starting) / 1e9);
+            if (existing < QUESTIONS) fill(app, existing);
+            assertThat(questions.count()).isEqualTo(QUESTIONS);
+
+            String rare = vocabulary.get(3_000);
+            String uncommon = vocabulary.get(300);
+            String[][] queries = {
+                    {"函数", null},
+                    {"已知函数", null},
+                    {"函数 最小值", null},
+                    {"三角形ABC 面积", null},
+                    {"x^2", null},
+                    {"3x^2+2x-1", null},
+                    {uncommon, null},
+                    {rare, null},
+                    {"函数 " + rare, null},
+                    {"等差数列 " + uncommon, null},
+                    {"的", null},
+                    {"函", null},
+                    {"圆", null},
+                    {"圆 " + uncommon, null},
+                    {"函数", "functions"},
+                    {"已知函数 最小值", "functions"},
+                    {uncommon, "geometry"},
+                    {"圆", "geometry"},
+            };
+
+            System.out.printf("%n%,d questions, first page of 20, %d runs per query%n", QUESTIONS, RUNS);
+            System.out.printf("%-24s %-13s %-40s %10s %10s %10s%n", "query", "category", "term frequencies", "total", "median ms", "p90 ms");
+            for (String[] query : queries) {
+                long[] nanos = new long[RUNS];
+                Page<Question> page = null;
+                for (int warmup = 0; warmup < 5; warmup++) search.search(query[0], query[1], PageRequest.of(0, 20));
+                for (int i = 0; i < RUNS; i++) {
+                    long started = System.nanoTime();
+                    page = search.search(query[0], query[1], PageRequest.of(0, 20));
+                    nanos[i] = System.nanoTime() - started;
+                }
+                Arrays.sort(nanos);
+                StringJoiner df = new StringJoiner(" ");
+                for (String term : new LinkedHashSet<>(SearchTokenizer.tokenize(query[0]))) {
+                    df.add(term + ":" + search.search(term, null, PageRequest.of(0, 1)).getTotalElements());
+                }
+                System.out.printf("%-24s %-13s %-40s %10d %10.1f %10.1f%n", query[0], query[1] == null ? "" : query[1],
+                        df, page.getTotalElements(), nanos[RUNS / 2] / 1e6, nanos[RUNS * 9 / 10] / 1e6);
+                assertThat(page.getTotalElements()).isPositive();
+            }
+            System.gc();
+            Runtime heap = Runtime.getRuntime();
+            System.out.printf("heap in use: %d MB%n", (heap.totalMemory() - heap.freeMemory()) >> 20);
+        }
+    }
+
+    /** Adds generated questions until there are {@value #QUESTIONS}, {@value #BATCH} per transaction. */
+    private void fill(ConfigurableApplicationContext app, long existing) {
+        QuestionRepository questions = app.getBean(QuestionRepository.class);
+        SearchIndexService search = app.getBean(SearchIndexService.class);
+        TransactionTemplate tx = app.getBean(TransactionTemplate.class);
+        Random random = new Random(existing);
+        UUID docId = UUID.randomUUID();
+        long started = System.nanoTime();
+        for (long done = existing; done < QUESTIONS; done += BATCH) {
+            List<Question> batch = new ArrayList<>();
+            for (int i = 0; i < Math.min(BATCH, QUESTIONS - done); i++) batch.add(question(random, docId, (int) ((done + i) / 20)));
+            tx.executeWithoutResult(status -> search.index(questions.saveAll(batch)));
+            if ((done + BATCH) % 100_000 == 0) {
+                System.out.printf("filled %,d questions in %.0f s%n", done + BATCH, (System.nanoTime() - started) / 1e9);
+            }
+        }
+    }
+
+    private Question question(Random random, UUID docId, int page) {
+        StringBuilder stem = new StringBuilder(PHRASES[random.nextInt(PHRASES.length)]);
+        int words = 6 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            stem.append(word(random));
+            if (random.nextInt(4) == 0) stem.append(PHRASES[random.nextInt(PHRASES.length)]);
+        }
+        stem.append("，f(x)=").append(1 + random.nextInt(9)).append("x^2+").append(random.nextInt(10)).append("x-").append(random.nextInt(10));
+
+        StringBuilder choices = new StringBuilder("{");
+        for (char key = 'A'; key <= 'D'; key++) {
+            if (key > 'A') choices.append(',');
+            choices.append('"').append(key).append("\":\"").append(word(random)).append(random.nextInt(100)).append('"');
+        }
+        choices.append('}');
+
+        Question q = new Question();
+        q.setDocumentId(docId);
+        q.setPageIndex(page);
+        q.setNumberLabel(String.valueOf(1 + random.nextInt(20)));
+        q.setStem(stem.toString());
+        q.setChoicesJson(choices.toString());
+        q.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        q.setConfidence(0.9);
+        return q;
+    }
+
+    private String word(Random random) {
+        int i = Arrays.binarySearch(zipf, random.nextDouble());
+        return vocabulary.get(Math.min(vocabulary.size() - 1, i < 0 ? -i - 1 : i));
+    }
+
+    /** 20,000 words of two to four characters; the word of rank r is drawn with weight 1/r. */
+    private void buildVocabulary() {
+        Random random = new Random(42);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < 20_000) {
+            StringBuilder w = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int i = 0; i < length; i++) w.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            words.add(w.toString());
+        }
+        vocabulary.addAll(words);
+        zipf = new double[vocabulary.size()];
+        double sum = 0;
+        for (int r = 0; r < zipf.length; r++) zipf[r] = sum += 1.0 / (r + 1);
+        for (int r = 0; r < zipf.length; r++) zipf[r] /= sum;
+    }
+}
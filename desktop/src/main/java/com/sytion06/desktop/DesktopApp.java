@@ -17,6 +17,7 @@ import javafx.scene.image.ImageView;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -36,6 +37,12 @@ public class DesktopApp extends Application {
             .callTimeout(Duration.ofSeconds(90))
             .build();
 
+    // progress streams stay open for the whole run
+    private static final OkHttpClient EVENTS_HTTP = HTTP.newBuilder()
+            .readTimeout(Duration.ZERO)
+            .callTimeout(Duration.ZERO)
+            .build();
+
     // --- Upload tab state
     private File selectedPdf;
     private Label selectedFileLabel;
@@ -48,7 +55,10 @@ public class DesktopApp extends Application {
     private TableView<DocumentRow> table;
     private TextArea docsOutput;
 
-    private ScheduledExecutorService poller;
+    private ScheduledExecutorService scheduler;
+    // docId -> open progress stream
+    private final Map<String, Call> watchers = new ConcurrentHashMap<>();
+    private volatile String questionsDocId;
 
     private final ObservableList<QuestionRow> questionsList = FXCollections.observableArrayList();
     private TableView<QuestionRow> qTable;
@@ -57,9 +67,20 @@ public class DesktopApp extends Application {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    // Page images never change once rendered (the server marks them immutable), and several
+    // questions usually sit on the same page, so decoded images are kept for the last few pages.
+    private static final int PAGE_IMAGE_CACHE_SIZE = 12;
+    private final Map<String, Image> pageImages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > PAGE_IMAGE_CACHE_SIZE;
+        }
+    };
+
     // --- Bank tab state
     private TreeView<TreeNodeData> bankTree;
-    private final Map<String, Integer> categoryLoadedPages = new HashMap<>();
+    // continuation token of the next page per expanded category ("" before the first page)
+    private final Map<String, String> categoryCursors = new HashMap<>();
     private final Set<String> categoryFullyLoaded = new HashSet<>();
 
     @Override
@@ -77,9 +98,14 @@ public class DesktopApp extends Application {
         stage.setScene(new Scene(tabs, 1200, 800));
         stage.show();
 
-        // initial load
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "doc-events-retry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // initial load; documents still running get a progress stream
         refreshDocuments();
-        startPolling();
     }
 
     // ---------------- Upload Tab ----------------
@@ -146,7 +172,7 @@ public class DesktopApp extends Application {
 
         Thread worker = new Thread(() -> {
             try {
-                String json = uploadPdfMultipart(selectedPdf);
+                String json = uploadPdfResumable(selectedPdf);
                 Platform.runLater(() -> {
                     uploadOutput.appendText("✅ Upload success!\n" + json + "\n");
                     setUploading(false);
@@ -163,23 +189,90 @@ public class DesktopApp extends Application {
         worker.start();
     }
 
-    private String uploadPdfMultipart(File pdf) throws IOException {
-        MediaType PDF = MediaType.parse("application/pdf");
-        RequestBody fileBody = RequestBody.create(pdf, PDF);
+    private static final int UPLOAD_CHUNK = 8 * 1024 * 1024;
+    private static final int UPLOAD_RETRIES = 5;
 
-        MultipartBody requestBody = new MultipartBody.Builder()
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("file", pdf.getName(), fileBody)
-                .build();
+    /** Non-2xx answer from the backend; 4xx other than 409 means retrying will not help. */
+    private static final class HttpStatusException extends IOException {
+        final int code;
 
-        Request request = new Request.Builder()
-                .url(BASE_URL + "/api/documents")
-                .post(requestBody)
+        HttpStatusException(int code, String body) {
+            super("HTTP " + code + ": " + body);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Uploads through a resumable session in 8 MB chunks, each sent as a raw body. When a chunk
+     * fails (dropped connection, server restart), the upload asks the backend how much it has and
+     * continues from there, so a large scan never starts over from zero.
+     */
+    private String uploadPdfResumable(File pdf) throws IOException, InterruptedException {
+        long size = pdf.length();
+        HttpUrl createUrl = HttpUrl.parse(BASE_URL + "/api/uploads").newBuilder()
+                .addQueryParameter("filename", pdf.getName())
+                .addQueryParameter("size", String.valueOf(size))
                 .build();
+        Map<String, Object> session = MAPPER.readValue(
+                execute(new Request.Builder().url(createUrl).post(RequestBody.create(new byte[0])).build()),
+                new TypeReference<Map<String, Object>>() {});
+        String sessionUrl = BASE_URL + "/api/uploads/" + session.get("uploadId");
+
+        MediaType octets = MediaType.parse("application/octet-stream");
+        byte[] buf = new byte[(int) Math.min(UPLOAD_CHUNK, size)];
+        long offset = 0;
+        int failures = 0;
+        try (RandomAccessFile in = new RandomAccessFile(pdf, "r")) {
+            while (true) {
+                int len = (int) Math.min(buf.length, size - offset);
+                in.seek(offset);
+                in.readFully(buf, 0, len);
+
+                Request chunk = new Request.Builder()
+                        .url(sessionUrl + "?offset=" + offset)
+                        .patch(RequestBody.create(buf, octets, 0, len))
+                        .build();
+                try {
+                    String body = execute(chunk);
+                    Map<String, Object> answer = MAPPER.readValue(body, new TypeReference<Map<String, Object>>() {});
+                    if (answer.containsKey("docId")) return body;     // last chunk: the upload result
+
+                    offset = ((Number) answer.get("offset")).longValue();
+                    failures = 0;
+                    long sent = offset;
+                    Platform.runLater(() -> uploadOutput.appendText(
+                            String.format("%d / %d MB%n", sent >> 20, size >> 20)));
+                } catch (IOException ex) {
+                    if (ex instanceof HttpStatusException hs && hs.code >= 400 && hs.code < 500 && hs.code != 409) {
+                        throw ex;
+                    }
+                    if (++failures > UPLOAD_RETRIES) throw ex;
+                    Thread.sleep(1000L * failures);
+                    offset = resumeOffset(sessionUrl, offset);
+                    long from = offset;
+                    Platform.runLater(() -> uploadOutput.appendText(
+                            "⚠ " + ex.getMessage() + ", resuming at " + (from >> 20) + " MB\n"));
+                }
+            }
+        }
+    }
 
+    /** Where the backend's copy of the upload ends; {@code fallback} if it cannot be asked right now. */
+    private long resumeOffset(String sessionUrl, long fallback) {
+        try {
+            Map<String, Object> status = MAPPER.readValue(
+                    execute(new Request.Builder().url(sessionUrl).get().build()),
+                    new TypeReference<Map<String, Object>>() {});
+            return ((Number) status.get("offset")).longValue();
+        } catch (IOException e) {
+            return fallback;
+        }
+    }
+
+    private static String execute(Request request) throws IOException {
         try (Response response = HTTP.newCall(request).execute()) {
             String body = response.body() != null ? response.body().string() : "";
-            if (!response.isSuccessful()) throw new IOException("HTTP " + response.code() + ": " + body);
+            if (!response.isSuccessful()) throw new HttpStatusException(response.code(), body);
             return body;
         }
     }
@@ -235,6 +328,7 @@ public class DesktopApp extends Application {
                     documents.setAll(rows);
                     docsOutput.appendText("Refreshed: " + rows.size() + " documents\n");
                 });
+                rows.stream().filter(d -> isActive(d.getStatus())).forEach(d -> watch(d.getDocId()));
             } catch (Exception ex) {
                 Platform.runLater(() -> docsOutput.appendText("❌ Refresh failed: " + ex.getMessage() + "\n"));
             }
@@ -255,8 +349,9 @@ public class DesktopApp extends Application {
                 String resp = postProcess(sel.getDocId());
                 Platform.runLater(() -> {
                     docsOutput.appendText("Process started: " + resp + "\n");
-                    refreshDocuments();
+                    setStatus(sel.getDocId(), "QUEUED");
                 });
+                watch(sel.getDocId());
             } catch (Exception ex) {
                 Platform.runLater(() -> docsOutput.appendText("❌ Process failed: " + ex.getMessage() + "\n"));
             }
@@ -295,24 +390,108 @@ public class DesktopApp extends Application {
         }
     }
 
-    // Poll status every 2s to keep the table updated during processing
-    private void startPolling() {
-        poller = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "doc-poller");
-            t.setDaemon(true);
-            return t;
-        });
+    private static boolean isActive(String status) {
+        return "PROCESSING".equals(status) || "QUEUED".equals(status);
+    }
 
-        poller.scheduleAtFixedRate(() -> {
-            boolean anyProcessing = documents.stream().anyMatch(d -> "PROCESSING".equals(d.getStatus()));
-            if (anyProcessing) {
-                try {
-                    List<DocumentRow> rows = fetchDocuments();
-                    Platform.runLater(() -> documents.setAll(rows));
-                } catch (Exception ignored) {
+    /**
+     * Follows GET /api/documents/{id}/events (Server-Sent Events) until the run finishes, updating
+     * the row's status and the open question list as pages complete. Replaces polling the whole
+     * document list. If the stream drops mid-run, the list is re-fetched a little later, which
+     * reopens the stream for documents that are still running.
+     */
+    private void watch(String docId) {
+        Request request = new Request.Builder()
+                .url(BASE_URL + "/api/documents/" + docId + "/events")
+                .header("Accept", "text/event-stream")
+                .get()
+                .build();
+        Call call = EVENTS_HTTP.newCall(request);
+        if (watchers.putIfAbsent(docId, call) != null) return;   // already watching
+
+        Thread worker = new Thread(() -> {
+            String lastStatus = null;
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException("HTTP " + response.code());
                 }
+                var source = response.body().source();
+                String event = "message";
+                StringBuilder data = new StringBuilder();
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    if (line.isEmpty()) {
+                        if (data.length() > 0) {
+                            String status = onDocumentEvent(docId, event, data.toString());
+                            if (status != null) lastStatus = status;
+                        }
+                        event = "message";
+                        data.setLength(0);
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:")) {
+                        if (data.length() > 0) data.append('\n');
+                        data.append(line.substring(5).trim());
+                    }
+                }
+            } catch (Exception ex) {
+                if (!call.isCanceled()) {
+                    Platform.runLater(() -> docsOutput.appendText("❌ Progress stream failed: " + ex.getMessage() + "\n"));
+                }
+                lastStatus = lastStatus == null ? "PROCESSING" : lastStatus;
+            } finally {
+                watchers.remove(docId, call);
+            }
+
+            if (isActive(lastStatus) && !call.isCanceled() && !scheduler.isShutdown()) {
+                scheduler.schedule(this::refreshDocuments, 5, TimeUnit.SECONDS);
             }
-        }, 2, 2, TimeUnit.SECONDS);
+        }, "doc-events-" + docId);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Applies one progress event; returns the document status it implies, if any. */
+    private String onDocumentEvent(String docId, String event, String json) throws JsonProcessingException {
+        Map<String, Object> data = MAPPER.readValue(json, new TypeReference<Map<String, Object>>() {});
+        Object pageIndex = data.get("pageIndex");
+        String page = pageIndex instanceof Number n ? String.valueOf(n.intValue() + 1) : "?";
+        String shortId = docId.substring(0, 8);
+
+        switch (event) {
+            case "snapshot", "document-started" -> {
+                String status = (String) data.get("status");
+                Platform.runLater(() -> setStatus(docId, status));
+                return status;
+            }
+            case "page-done" -> Platform.runLater(() -> {
+                docsOutput.appendText(shortId + ": page " + page + " done, " + data.get("questionCount") + " question(s)\n");
+                // finished pages show up while later pages are still running
+                if (docId.equals(questionsDocId)) loadQuestions(docId);
+            });
+            case "page-failed" -> Platform.runLater(() ->
+                    docsOutput.appendText("❌ " + shortId + ": page " + page + " failed: " + data.get("error") + "\n"));
+            case "document-finished" -> {
+                String status = (String) data.get("status");
+                Platform.runLater(() -> {
+                    setStatus(docId, status);
+                    docsOutput.appendText(shortId + ": " + status + ", " + data.get("questionCount") + " question(s)"
+                            + (data.get("lastError") != null ? " (" + data.get("lastError") + ")" : "") + "\n");
+                    if (docId.equals(questionsDocId)) loadQuestions(docId);
+                });
+                return status;
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    private void setStatus(String docId, String status) {
+        if (status == null) return;
+        documents.replaceAll(d -> d.getDocId().equals(docId) && !status.equals(d.getStatus())
+                ? new DocumentRow(d.getDocId(), d.getFilename(), status, d.getCreatedAt())
+                : d);
     }
 
     private Pane buildQuestionsTab() {
@@ -370,28 +549,8 @@ public class DesktopApp extends Application {
                 return;
             }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append(newV.getStem()).append("\n\n");
-
-            var choices = newV.getChoices();
-            if (choices != null && !choices.isEmpty()) {
-                sb.append("Choices:\n");
-                for (String key : List.of("A", "B", "C", "D", "E")) {
-                    String val = choices.get(key);
-                    if (val != null && !val.isBlank()) {
-                        sb.append(key).append(". ").append(val).append("\n");
-                    }
-                }
-            }
-            qPreview.setText(sb.toString());
-
-            // Load image if available
-            if (newV.getPageImageUrl() != null && !newV.getPageImageUrl().isBlank()) {
-                String url = BASE_URL + newV.getPageImageUrl();
-                qImageView.setImage(new javafx.scene.image.Image(url, true));
-            } else {
-                qImageView.setImage(null);
-            }
+            // the list only has summaries; stem, choices and page image come with the detail
+            loadQuestionDetailIntoPreview(newV.getId(), qPreview, qImageView);
         });
 
         Button loadBtn = new Button("Load questions for selected document");
@@ -412,14 +571,23 @@ public class DesktopApp extends Application {
             docsOutput.appendText("Select a document in the Documents tab first.\n");
             return;
         }
+        questionsDocId = sel.getDocId();
+        loadQuestions(sel.getDocId());
+    }
 
+    private void loadQuestions(String docId) {
         Thread worker = new Thread(() -> {
             try {
-                String json = getQuestionsJson(sel.getDocId());
+                String json = getQuestionsJson(docId);
                 List<QuestionRow> rows = SimpleJson.parseQuestionList(json);
                 Platform.runLater(() -> {
+                    // live reloads during processing keep the question being read selected
+                    QuestionRow selected = qTable.getSelectionModel().getSelectedItem();
                     questionsList.setAll(rows);
-                    qPreview.clear();
+                    rows.stream()
+                            .filter(r -> selected != null && r.getId().equals(selected.getId()))
+                            .findFirst()
+                            .ifPresentOrElse(r -> qTable.getSelectionModel().select(r), qPreview::clear);
                 });
             } catch (Exception ex) {
                 Platform.runLater(() -> docsOutput.appendText("❌ Load questions failed: " + ex.getMessage() + "\n"));
@@ -431,7 +599,7 @@ public class DesktopApp extends Application {
 
     private String getQuestionsJson(String docId) throws IOException {
         Request request = new Request.Builder()
-                .url(BASE_URL + "/api/documents/" + docId + "/questions")
+                .url(BASE_URL + "/api/documents/" + docId + "/questions?view=summary")
                 .get()
                 .build();
 
@@ -499,7 +667,7 @@ public class DesktopApp extends Application {
 
         Button refresh = new Button("Refresh categories");
         refresh.setOnAction(e -> {
-            categoryLoadedPages.clear();
+            categoryCursors.clear();
             categoryFullyLoaded.clear();
             root.getChildren().clear();
             loadCategoriesIntoTree(root);
@@ -560,8 +728,8 @@ public class DesktopApp extends Application {
                         catItem.expandedProperty().addListener((obs, was, isNow) -> {
                             if (!isNow) return;
 
-                            if (!categoryLoadedPages.containsKey(category)) {
-                                categoryLoadedPages.put(category, 0);
+                            if (!categoryCursors.containsKey(category)) {
+                                categoryCursors.put(category, "");
                                 catItem.getChildren().clear();
                                 loadMoreQuestionsForCategory(category, catItem);
                             }
@@ -584,7 +752,7 @@ public class DesktopApp extends Application {
     private void loadMoreQuestionsForCategory(String category, TreeItem<TreeNodeData> categoryNode) {
         if (categoryFullyLoaded.contains(category)) return;
 
-        int page = categoryLoadedPages.getOrDefault(category, 0);
+        String cursor = categoryCursors.getOrDefault(category, "");
         int size = 50;
 
         Thread worker = new Thread(() -> {
@@ -592,9 +760,10 @@ public class DesktopApp extends Application {
                 HttpUrl url = HttpUrl.parse(BASE_URL + "/api/questions")
                         .newBuilder()
                         .addQueryParameter("category", category)
-                        .addQueryParameter("page", String.valueOf(page))
+                        .addQueryParameter("cursor", cursor)
                         .addQueryParameter("size", String.valueOf(size))
-                        .addQueryParameter("sort", "createdAt,desc")
+                        .addQueryParameter("count", "false")
+                        .addQueryParameter("view", "summary")
                         .build();
 
                 Request request = new Request.Builder().url(url).get().build();
@@ -614,11 +783,12 @@ public class DesktopApp extends Application {
                 for (Map<String, Object> qObj : content) {
                     String id = String.valueOf(qObj.get("id"));
                     String numberLabel = (String) qObj.get("numberLabel");
-                    String stem = (String) qObj.get("stem");
+                    String stem = (String) qObj.get("stemPreview");
                     newItems.add(new TreeItem<>(TreeNodeData.question(makeTreeLabel(numberLabel, stem), id)));
                 }
 
-                boolean lastPage = content.size() < size;
+                String nextCursor = (String) pageObj.get("nextCursor");
+                boolean lastPage = nextCursor == null;
 
                 Platform.runLater(() -> {
                     // remove old "Load more..."
@@ -637,7 +807,7 @@ public class DesktopApp extends Application {
                         ));
                     }
 
-                    categoryLoadedPages.put(category, page + 1);
+                    if (!lastPage) categoryCursors.put(category, nextCursor);
                 });
 
             } catch (Exception ex) {
@@ -705,7 +875,7 @@ public class DesktopApp extends Application {
 
                     // Image
                     if (pageImageUrl != null && !pageImageUrl.isBlank()) {
-                        imageView.setImage(new Image(BASE_URL + pageImageUrl, true));
+                        imageView.setImage(pageImage(pageImageUrl));
                     } else {
                         imageView.setImage(null);
                     }
@@ -732,7 +902,18 @@ public class DesktopApp extends Application {
 
     @Override
     public void stop() {
-        if (poller != null) poller.shutdownNow();
+        if (scheduler != null) scheduler.shutdownNow();
+        watchers.values().forEach(Call::cancel);
+    }
+
+    /** FX thread only. A load that failed is dropped so the next selection retries it. */
+    private Image pageImage(String pageImageUrl) {
+        Image cached = pageImages.get(pageImageUrl);
+        if (cached != null && !cached.isError()) return cached;
+        // both tabs show the page at 900px, which is what the preview rendition is scaled to
+        Image image = new Image(BASE_URL + pageImageUrl + "?size=preview", true);
+        pageImages.put(pageImageUrl, image);
+        return image;
     }
 
     public static class QuestionRow {
@@ -743,14 +924,10 @@ public class DesktopApp extends Application {
         private final String category;
         private final double confidence;
         private final boolean needsReview;
-        private final String stem;
-        private final Map<String, String> choices;
         private final boolean hasFigure;
-        private final String pageImageUrl;
 
         public QuestionRow(String id, String documentId, int pageIndex, String numberLabel,
-                           String category, double confidence, boolean needsReview,
-                           String stem, Map<String, String> choices, boolean hasFigure, String pageImageUrl) {
+                           String category, double confidence, boolean needsReview, boolean hasFigure) {
             this.id = id;
             this.documentId = documentId;
             this.pageIndex = pageIndex;
@@ -758,10 +935,7 @@ public class DesktopApp extends Application {
             this.category = category;
             this.confidence = confidence;
             this.needsReview = needsReview;
-            this.stem = stem;
-            this.choices = choices;
             this.hasFigure = hasFigure;
-            this.pageImageUrl = pageImageUrl;
         }
 
         public String getId() { return id; }
@@ -771,12 +945,7 @@ public class DesktopApp extends Application {
         public String getCategory() { return category; }
         public double getConfidence() { return confidence; }
         public boolean isNeedsReview() { return needsReview; }
-        public String getStem() { return stem; }
-        public Map<String, String> getChoices() {
-            return choices;
-        }
         public boolean isHasFigure() { return hasFigure; }
-        public String getPageImageUrl() { return pageImageUrl; }
     }
 
     // --- Table row model
@@ -846,18 +1015,13 @@ public class DesktopApp extends Application {
                 String documentId = String.valueOf(q.get("documentId"));
                 int pageIndex = ((Number) q.get("pageIndex")).intValue();
                 String numberLabel = (String) q.get("numberLabel");
-                String stem = (String) q.get("stem");
                 String category = (String) q.get("category");
                 double confidence = ((Number) q.get("confidence")).doubleValue();
                 boolean needsReview = (Boolean) q.get("needsReview");
                 boolean hasFigure = q.get("hasFigure") != null && (Boolean) q.get("hasFigure");
-                String pageImageUrl = (String) q.get("pageImageUrl");
-
-                @SuppressWarnings("unchecked")
-                Map<String, String> choices = (Map<String, String>) q.get("choices");
 
                 rows.add(new QuestionRow(id, documentId, pageIndex, numberLabel, category,
-                        confidence, needsReview, stem, choices, hasFigure, pageImageUrl));
+                        confidence, needsReview, hasFigure));
             }
             return rows;
         }